@@ -0,0 +1,284 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access Log - ghi log request bất đồng bộ qua ring buffer cấp phát sẵn.
+ *
+ * Thread xử lý request chỉ nhận một slot bằng CAS và ghi vài field (không format,
+ * không I/O). Một thread nền duy nhất đọc các slot đã publish, format theo lô và ghi
+ * ra file có xoay vòng theo dung lượng. Khi buffer đầy, record bị bỏ và được đếm
+ * trong {@link #dropped()} thay vì làm chậm request.
+ *
+ * Record publish trong lúc {@link #close()} được hoặc ghi, hoặc bị chính producer hủy (đổi
+ * sequence của slot sang {@code ~position} bằng CAS) và đếm là dropped, không bao giờ cả hai
+ * hay không cái nào: writer cũng CAS slot sau khi format, và chỉ dừng khi mọi slot đã nhận
+ * đều đã được ghi hoặc hủy.
+ */
+final class AccessLog implements Closeable {
+    static final int DEFAULT_CAPACITY = 8192;
+    static final long DEFAULT_MAX_FILE_BYTES = 10L * 1024 * 1024;
+    static final int DEFAULT_MAX_FILES = 5;
+
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss.SSS Z", Locale.US);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // Các slot cố định: mỗi field là một mảng song song, chỉ index theo slot
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final String[] methods;
+    private final URI[] uris;
+    private final InetSocketAddress[] remotes;
+    private final int[] statuses;
+    private final long[] bytes;
+    private final long[] latencies;
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // chỉ thread writer đọc/ghi
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Thread writer;
+    private volatile boolean closed;
+    private OutputStream out;
+    private long fileBytes;
+
+    AccessLog(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param file         file log hiện tại, ví dụ server.log
+     * @param capacity     số slot của ring buffer (làm tròn lên lũy thừa của 2)
+     * @param maxFileBytes xoay file khi vượt quá dung lượng này
+     * @param maxFiles     số file cũ giữ lại (server.log.1 .. server.log.N)
+     */
+    AccessLog(Path file, int capacity, long maxFileBytes, int maxFiles) throws IOException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be >= 2: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.timestamps = new long[size];
+        this.methods = new String[size];
+        this.uris = new URI[size];
+        this.remotes = new InetSocketAddress[size];
+        this.statuses = new int[size];
+        this.bytes = new long[size];
+        this.latencies = new long[size];
+
+        this.file = file.toAbsolutePath();
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        openFile();
+
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Publish một record; không bao giờ chặn. Trả về false nếu buffer đầy (record bị bỏ).
+     */
+    boolean publish(String method, URI uri, InetSocketAddress remote, int status, long responseBytes,
+                    long latencyNanos) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                dropped.increment(); // writer chưa đọc kịp vòng trước
+                return false;
+            }
+            // sequence > position: thread khác vừa lấy slot này, thử lại
+        }
+        timestamps[slot] = System.currentTimeMillis();
+        methods[slot] = method;
+        uris[slot] = uri;
+        remotes[slot] = remote;
+        statuses[slot] = status;
+        bytes[slot] = responseBytes;
+        latencies[slot] = latencyNanos;
+        sequences.set(slot, position + 1); // publish cho writer
+        if (closed && sequences.compareAndSet(slot, position + 1, ~position)) {
+            dropped.increment(); // writer có thể đã ghi lần cuối trước khi thấy record này
+            return false;
+        }
+        return true;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    long written() {
+        return written.sum();
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /** Ghi nốt các record còn trong buffer rồi đóng file. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(64 * 1024);
+        try {
+            while (true) {
+                boolean stopping = closed; // đọc trước khi drain để không sót record cuối
+                int count = drain(batch);
+                if (count > 0) {
+                    write(batch);
+                    written.add(count);
+                    batch.setLength(0);
+                    continue;
+                }
+                out.flush();
+                if (stopping && head == tail.get()) {
+                    break; // slot đã nhận nhưng chưa publish thì chờ: sẽ được publish hoặc hủy
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Access log lỗi, ngừng ghi: " + e.getMessage());
+            closed = true;
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // bỏ qua
+            }
+        }
+    }
+
+    /** Format các record đã publish vào batch (tối đa một vòng buffer). */
+    private int drain(StringBuilder batch) {
+        int count = 0;
+        while (count <= mask) {
+            int slot = (int) head & mask;
+            long sequence = sequences.get(slot);
+            if (sequence != head + 1 && sequence != ~head) {
+                break;
+            }
+            int mark = batch.length();
+            if (sequence == head + 1) {
+                format(batch, slot);
+            }
+            methods[slot] = null;
+            uris[slot] = null;
+            remotes[slot] = null;
+            // Trả slot cho vòng kế tiếp phải là lần ghi cuối vào slot: ngay sau đó producer
+            // của vòng sau có thể nhận và publish slot này
+            boolean kept = sequence == head + 1 && sequences.compareAndSet(slot, head + 1, head + mask + 1);
+            if (!kept) {
+                batch.setLength(mark); // producer đã hủy record (đã đếm dropped)
+                sequences.set(slot, head + mask + 1); // slot đang là ~head, không producer nào nhận được
+            }
+            head++;
+            if (kept) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void format(StringBuilder line, int slot) {
+        InetSocketAddress remote = remotes[slot];
+        line.append(remote != null ? remote.getAddress().getHostAddress() : "-")
+            .append(" [")
+            .append(TIMESTAMP.format(Instant.ofEpochMilli(timestamps[slot]).atZone(zone)))
+            .append("] \"").append(methods[slot]).append(' ').append(uris[slot]).append("\" ")
+            .append(statuses[slot]).append(' ')
+            .append(bytes[slot]).append(' ');
+        long micros = latencies[slot] / 1000;
+        line.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            line.append('0');
+        }
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction).append("ms\n");
+    }
+
+    private void write(StringBuilder batch) throws IOException {
+        byte[] data = batch.toString().getBytes(StandardCharsets.UTF_8);
+        if (fileBytes > 0 && fileBytes + data.length > maxFileBytes) {
+            rotate();
+        }
+        out.write(data);
+        fileBytes += data.length;
+    }
+
+    /** server.log -> server.log.1 -> ... -> server.log.N (file cũ nhất bị xóa). */
+    private void rotate() throws IOException {
+        out.close();
+        String name = file.getFileName().toString();
+        Files.deleteIfExists(file.resolveSibling(name + "." + maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = file.resolveSibling(name + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, file.resolveSibling(name + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, file.resolveSibling(name + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE), 64 * 1024);
+        fileBytes = Files.size(file);
+    }
+}
@@ -0,0 +1,134 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Admission Filter - giới hạn số request xử lý đồng thời và loại bỏ tải dư.
+ *
+ * Tối đa {@code maxInFlight} request được chạy handler cùng lúc. Request đến sau chờ
+ * trong một hàng đợi có giới hạn ({@code maxQueued}) và tối đa {@code queueTimeoutMillis};
+ * hết chỗ hoặc hết hạn thì trả ngay 503 kèm Retry-After. Nhờ vậy các request đã được
+ * nhận giữ latency ổn định thay vì tất cả cùng chậm dần khi quá tải.
+ *
+ * Ở chế độ INLINE, request chờ trong hàng đợi sẽ chặn dispatcher thread; nên dùng
+ * cùng VIRTUAL_THREADS hoặc BOUNDED_POOL.
+ */
+final class AdmissionFilter extends Filter {
+    private static final byte[] REJECTED_BODY =
+        "503 Service Unavailable - server quá tải, thử lại sau\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final int retryAfterSeconds;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder shedQueueFull = new LongAdder();
+    private final LongAdder shedTimeout = new LongAdder();
+
+    /**
+     * @param maxInFlight        số request chạy handler đồng thời tối đa
+     * @param maxQueued          số request được chờ tối đa (0 = không chờ)
+     * @param queueTimeoutMillis thời gian chờ tối đa trong hàng đợi
+     */
+    AdmissionFilter(int maxInFlight, int maxQueued, long queueTimeoutMillis) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be >= 1: " + maxInFlight);
+        }
+        if (maxQueued < 0 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("maxQueued and queueTimeoutMillis must be >= 0");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(queueTimeoutMillis));
+        this.permits = new Semaphore(maxInFlight, true); // fair: request chờ lâu nhất được vào trước
+    }
+
+    @Override
+    public String description() {
+        return "Admission control (max " + maxInFlight + " in flight, " + maxQueued + " queued)";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!acquire()) {
+            reject(exchange);
+            return;
+        }
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        if (permits.tryAcquire()) {
+            admitted.increment();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            shedQueueFull.increment();
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                admitted.increment();
+                delayed.increment();
+                return true;
+            }
+            shedTimeout.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shedTimeout.increment();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/plain; charset=UTF-8");
+        headers.set("Retry-After", String.valueOf(retryAfterSeconds));
+        headers.set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(503, REJECTED_BODY.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(REJECTED_BODY);
+        }
+    }
+
+    int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    long admitted() {
+        return admitted.sum();
+    }
+
+    long delayed() {
+        return delayed.sum();
+    }
+
+    long shedQueueFull() {
+        return shedQueueFull.sum();
+    }
+
+    long shedTimeout() {
+        return shedTimeout.sum();
+    }
+}
@@ -0,0 +1,92 @@
+package com.httpbrowser;
+
+import java.awt.Point;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import javax.swing.JEditorPane;
+
+/**
+ * Back/Forward Cache - ảnh chụp các trang vừa rời khỏi trong {@link WebBrowser} để Back/Forward
+ * hiện lại ngay, không tải lại và không chạy lại prepareHtmlForRendering.
+ *
+ * Mỗi ảnh chụp giữ HTML đã xử lý (tham chiếu mạnh, tính vào {@code budgetChars}) và chính
+ * JEditorPane đã hiển thị trang qua SoftReference. Gắn lại pane cũ bỏ qua được cả bước parse lẫn
+ * dựng view (riêng setDocument đã phải dựng lại toàn bộ view), nhưng pane lớn gấp nhiều lần HTML
+ * nên để GC thu hồi khi thiếu bộ nhớ; lúc đó vẫn còn HTML để dựng lại. LRU, tối đa
+ * {@code maxEntries} ảnh chụp. Chỉ dùng trên EDT.
+ */
+final class BackForwardCache {
+    private final int maxEntries;
+    private final long budgetChars;
+    private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+    private long hits;
+    private long paneHits;
+    private long misses;
+
+    /** Trang đã hiển thị: HTML đã xử lý, base URL, pane (có thể đã bị GC thu hồi) và vị trí cuộn. */
+    static final class Snapshot {
+        final String html;
+        final URL base;
+        final SoftReference<JEditorPane> pane;
+        final Point viewPosition;
+
+        Snapshot(String html, URL base, JEditorPane pane, Point viewPosition) {
+            this.html = html;
+            this.base = base;
+            this.pane = new SoftReference<>(pane);
+            this.viewPosition = viewPosition;
+        }
+    }
+
+    BackForwardCache(int maxEntries, long budgetChars) {
+        if (maxEntries < 1 || budgetChars < 1) {
+            throw new IllegalArgumentException("maxEntries and budgetChars must be >= 1");
+        }
+        this.maxEntries = maxEntries;
+        this.budgetChars = budgetChars;
+    }
+
+    void put(String url, Snapshot snapshot) {
+        remove(url);
+        if (snapshot.html.length() > budgetChars) {
+            return;
+        }
+        snapshots.put(url, snapshot);
+        chars += snapshot.html.length();
+        Iterator<Snapshot> lru = snapshots.values().iterator();
+        while ((chars > budgetChars || snapshots.size() > maxEntries) && lru.hasNext()) {
+            chars -= lru.next().html.length();
+            lru.remove();
+        }
+    }
+
+    /** @return ảnh chụp của URL hoặc null; đếm hit (kèm pane còn sống hay không) và miss */
+    Snapshot get(String url) {
+        Snapshot snapshot = snapshots.get(url);
+        if (snapshot == null) {
+            misses++;
+        } else {
+            hits++;
+            if (snapshot.pane.get() != null) {
+                paneHits++;
+            }
+        }
+        return snapshot;
+    }
+
+    void remove(String url) {
+        Snapshot removed = snapshots.remove(url);
+        if (removed != null) {
+            chars -= removed.html.length();
+        }
+    }
+
+    /** Ví dụ: {@code 4 pages, 120 KB html; hit 7 (rendered 6), miss 1}. */
+    String stats() {
+        return String.format("%d pages, %d KB html; hit %d (rendered %d), miss %d",
+            snapshots.size(), chars * 2 / 1024, hits, paneHits, misses);
+    }
+}
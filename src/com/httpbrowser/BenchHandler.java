@@ -0,0 +1,364 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bench Handler - các endpoint tổng hợp để benchmark client.
+ *
+ * <pre>
+ * GET /bench/html?size=200k&amp;tags=div,p,a,img,table   HTML đúng {@code size} byte
+ * GET /bench/json?items=N                             object JSON với N phần tử
+ * GET /bench/bytes?size=100m                          byte thô (application/octet-stream)
+ * GET /bench/delay?ms=N                               trả lời sau N ms
+ * GET /bench/drip?chunks=N&amp;interval=ms&amp;chunk=bytes    chunked, nhỏ giọt từng phần
+ * </pre>
+ * Tham số chung: {@code delay=ms} (chờ trước khi trả lời), {@code errorRate=0..1} và
+ * {@code errorStatus} (mặc định 500) để trả lỗi ngẫu nhiên, {@code seed} để nội dung và
+ * quyết định lỗi lặp lại được. Kích thước nhận hậu tố k/m/g.
+ *
+ * Mọi response được sinh dạng stream với bộ nhớ cố định, không phụ thuộc kích thước.
+ */
+final class BenchHandler implements HttpHandler {
+    static final long MAX_BYTES = 16L * 1024 * 1024 * 1024;
+    static final int MAX_ITEMS = 10_000_000;
+    static final long MAX_DELAY_MILLIS = 60_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] DEFAULT_TAGS = {"div", "p", "span", "a", "img", "ul", "table"};
+    private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur",
+        "adipiscing", "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "labore", "magna", "aliqua"};
+    private static final byte[] PATTERN = new byte[BUFFER_SIZE];
+
+    static {
+        // Chép nhân đôi thay vì lặp từng byte: class được nạp lúc start, vòng lặp 64K lần
+        // trong interpreter làm chậm khởi động vài chục ms
+        for (int i = 0; i < 26; i++) {
+            PATTERN[i] = (byte) ('a' + i);
+        }
+        for (int filled = 26; filled < PATTERN.length; filled *= 2) {
+            System.arraycopy(PATTERN, 0, PATTERN, filled, Math.min(filled, PATTERN.length - filled));
+        }
+    }
+
+    private final String contextPath;
+
+    BenchHandler(String contextPath) {
+        this.contextPath = contextPath;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            sendText(exchange, 405, "Method Not Allowed\n");
+            return;
+        }
+        String endpoint = exchange.getRequestURI().getPath().substring(contextPath.length());
+        if (endpoint.startsWith("/")) {
+            endpoint = endpoint.substring(1);
+        }
+        Map<String, String> query = WebServer.queryParameters(exchange.getRequestURI());
+        try {
+            String seedParameter = query.get("seed");
+            Random random = seedParameter != null ? new Random(Long.parseLong(seedParameter)) : null;
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+
+            sleep(parseLong(query.get("delay"), 0, MAX_DELAY_MILLIS, "delay"));
+            double errorRate = parseDouble(query.get("errorRate"), 0);
+            if (errorRate > 0 && (random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble()) < errorRate) {
+                int status = (int) parseLong(query.get("errorStatus"), 500, 599, "errorStatus");
+                if (status < 400) {
+                    throw new IllegalArgumentException("errorStatus must be between 400 and 599");
+                }
+                sendText(exchange, status, "Injected error " + status + " (errorRate=" + errorRate + ")\n");
+                return;
+            }
+            if (random == null) {
+                random = new Random(0);
+            }
+
+            switch (endpoint) {
+                case "" -> sendText(exchange, 200, usage());
+                case "html" -> html(exchange, query, random);
+                case "json" -> json(exchange, query, random);
+                case "bytes" -> bytes(exchange, query);
+                case "delay" -> delay(exchange, query);
+                case "drip" -> drip(exchange, query);
+                default -> sendText(exchange, 404, "Unknown bench endpoint: " + endpoint + "\n\n" + usage());
+            }
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * HTML có độ dài chính xác {@code size} byte: sinh các phần tử theo tag mix cho tới khi
+     * gần hết, phần dư được lấp bằng comment.
+     */
+    private void html(HttpExchange exchange, Map<String, String> query, Random random) throws IOException {
+        long size = parseSize(query.get("size"), 100 * 1024, "size");
+        String[] tags = query.containsKey("tags") ? query.get("tags").split(",") : DEFAULT_TAGS;
+        for (String tag : tags) {
+            if (!tag.matches("[a-z][a-z0-9]{0,9}")) {
+                throw new IllegalArgumentException("invalid tag: " + tag);
+            }
+        }
+        byte[] head = ("<!DOCTYPE html><html><head><meta charset='UTF-8'><title>Bench " + size
+            + " bytes</title></head><body>\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "</body></html>\n".getBytes(StandardCharsets.UTF_8);
+        if (size < head.length + tail.length) {
+            throw new IllegalArgumentException("size must be >= " + (head.length + tail.length));
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, size);
+        try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE)) {
+            os.write(head);
+            long remaining = size - head.length - tail.length;
+            StringBuilder element = new StringBuilder(256);
+            for (int n = 1; ; n++) {
+                element.setLength(0);
+                appendElement(element, tags[random.nextInt(tags.length)], n, random);
+                // Phần tử chỉ chứa ASCII nên số char bằng số byte
+                if (element.length() + 7 > remaining) {
+                    break;
+                }
+                writeAscii(os, element);
+                remaining -= element.length();
+            }
+            element.setLength(0);
+            if (remaining >= 7) {
+                element.append("<!--");
+                for (long i = 7; i < remaining; i++) {
+                    element.append(' ');
+                    if (element.length() == BUFFER_SIZE) {
+                        writeAscii(os, element);
+                        element.setLength(0);
+                    }
+                }
+                element.append("-->");
+            } else {
+                for (long i = 0; i < remaining; i++) {
+                    element.append('\n');
+                }
+            }
+            writeAscii(os, element);
+            os.write(tail);
+        }
+    }
+
+    private static void appendElement(StringBuilder html, String tag, int n, Random random) {
+        switch (tag) {
+            case "a" -> html.append("<a href='/bench/html?seed=").append(n).append("'>link ").append(n).append("</a>\n");
+            case "img" -> html.append("<img src='/static/image").append(n % 5 + 1).append(".jpg' alt='Image ")
+                .append(n).append("' width='64' height='64'>\n");
+            case "ul" -> {
+                html.append("<ul>");
+                for (int i = 0; i < 3; i++) {
+                    html.append("<li>");
+                    appendWords(html, 3, random);
+                    html.append("</li>");
+                }
+                html.append("</ul>\n");
+            }
+            case "table" -> {
+                html.append("<table><tr><th>#</th><th>value</th></tr>");
+                for (int i = 0; i < 3; i++) {
+                    html.append("<tr><td>").append(i).append("</td><td>");
+                    appendWords(html, 2, random);
+                    html.append("</td></tr>");
+                }
+                html.append("</table>\n");
+            }
+            default -> {
+                html.append('<').append(tag).append(" class='c").append(n % 7).append("'>");
+                appendWords(html, 4 + random.nextInt(12), random);
+                html.append("</").append(tag).append(">\n");
+            }
+        }
+    }
+
+    private static void appendWords(StringBuilder text, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+
+    private void json(HttpExchange exchange, Map<String, String> query, Random random) throws IOException {
+        long items = parseLong(query.get("items"), 100, MAX_ITEMS, "items");
+        try (JsonWriter json = JsonWriter.forResponse(exchange, 200)) {
+            json.beginObject().field("count", items).name("items").beginArray();
+            for (long i = 1; i <= items; i++) {
+                json.beginObject()
+                    .field("id", i)
+                    .field("name", WORDS[random.nextInt(WORDS.length)] + " " + i)
+                    .name("value").value(random.nextInt(1_000_000) / 100.0)
+                    .field("active", random.nextBoolean())
+                    .name("tags").beginArray()
+                    .value(WORDS[random.nextInt(WORDS.length)])
+                    .value(WORDS[random.nextInt(WORDS.length)])
+                    .endArray()
+                    .endObject();
+            }
+            json.endArray().endObject();
+        }
+    }
+
+    private void bytes(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long size = parseSize(query.get("size"), 1024 * 1024, "size");
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, size > 0 ? size : -1);
+        try (OutputStream os = exchange.getResponseBody()) {
+            for (long remaining = size; remaining > 0; ) {
+                int n = (int) Math.min(remaining, PATTERN.length);
+                os.write(PATTERN, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    private void delay(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long millis = parseLong(query.get("ms"), 1000, MAX_DELAY_MILLIS, "ms");
+        long start = System.nanoTime();
+        sleep(millis);
+        sendText(exchange, 200, "Delayed " + (System.nanoTime() - start) / 1_000_000 + " ms\n");
+    }
+
+    /** Chunked: gửi {@code chunks} phần, mỗi phần flush ngay rồi nghỉ {@code interval} ms. */
+    private void drip(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int chunks = (int) parseLong(query.get("chunks"), 10, 100_000, "chunks");
+        long interval = parseLong(query.get("interval"), 200, MAX_DELAY_MILLIS, "interval");
+        int chunkSize = (int) parseLong(query.get("chunk"), 64, BUFFER_SIZE, "chunk");
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk must be >= 1");
+        }
+        if (chunks * interval > 10 * MAX_DELAY_MILLIS) {
+            throw new IllegalArgumentException("chunks * interval must be <= " + 10 * MAX_DELAY_MILLIS + " ms");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            byte[] chunk = new byte[chunkSize];
+            for (int i = 0; i < chunks; i++) {
+                byte[] label = ("chunk " + (i + 1) + "/" + chunks + " ").getBytes(StandardCharsets.US_ASCII);
+                int prefix = Math.min(label.length, chunkSize - 1);
+                System.arraycopy(label, 0, chunk, 0, prefix);
+                System.arraycopy(PATTERN, 0, chunk, prefix, chunkSize - 1 - prefix);
+                chunk[chunkSize - 1] = '\n';
+                os.write(chunk);
+                os.flush();
+                if (i < chunks - 1) {
+                    sleep(interval);
+                }
+            }
+        }
+    }
+
+    private static String usage() {
+        return "Bench endpoints:\n"
+            + "  /bench/html?size=200k&tags=div,p,a,img,table\n"
+            + "  /bench/json?items=1000\n"
+            + "  /bench/bytes?size=100m\n"
+            + "  /bench/delay?ms=500\n"
+            + "  /bench/drip?chunks=10&interval=200&chunk=64\n"
+            + "Common: delay=ms, errorRate=0..1, errorStatus=5xx, seed=N\n";
+    }
+
+    private static void writeAscii(OutputStream os, CharSequence text) throws IOException {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        os.write(bytes);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("bench delay interrupted");
+        }
+    }
+
+    /** Kích thước dạng 512, 200k, 10m, 1g. */
+    static long parseSize(String value, long defaultValue, String name) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        switch (text.charAt(text.length() - 1)) {
+            case 'k' -> multiplier = 1024;
+            case 'm' -> multiplier = 1024 * 1024;
+            case 'g' -> multiplier = 1024 * 1024 * 1024;
+            default -> {
+            }
+        }
+        if (multiplier > 1) {
+            text = text.substring(0, text.length() - 1);
+        }
+        long size;
+        try {
+            size = Math.multiplyExact(Long.parseLong(text), multiplier);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a size such as 512, 200k or 10m");
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + MAX_BYTES); // tràn long
+        }
+        if (size < 0 || size > MAX_BYTES) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + MAX_BYTES);
+        }
+        return size;
+    }
+
+    private static long parseLong(String value, long defaultValue, long max, String name) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        long result;
+        try {
+            result = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        if (result < 0 || result > max) {
+            throw new IllegalArgumentException(name + " must be between 0 and " + max);
+        }
+        return result;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double result = Double.parseDouble(value.trim());
+            if (result < 0 || result > 1) {
+                throw new IllegalArgumentException("errorRate must be between 0 and 1");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("errorRate must be a number");
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] response = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+        }
+    }
+}
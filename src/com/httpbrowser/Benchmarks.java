@@ -0,0 +1,1099 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.net.ssl.*;
+
+/**
+ * Benchmarks - Các bài đo hiệu năng cho WebServer.
+ *
+ * Chạy từ command line:
+ * <pre>
+ * java --module-path bin -m SimpleHttpBrowser/com.httpbrowser.Benchmarks executor
+ * </pre>
+ */
+public final class Benchmarks {
+    private static final Map<String, String> SUITES = new LinkedHashMap<>();
+
+    static {
+        SUITES.put("executor", "So sánh INLINE / VIRTUAL_THREADS / BOUNDED_POOL khi có POST /echo chậm");
+        SUITES.put("template", "Allocation/request và req/s: render String mỗi request vs ResponseTemplate");
+        SUITES.put("conditional", "GET đầy đủ vs revalidate bằng If-None-Match (304)");
+        SUITES.put("compression", "Byte trên đường truyền và CPU/response cho identity/gzip/deflate");
+        SUITES.put("echo", "Thông lượng và heap đỉnh của POST /echo với body 1 MB .. 512 MB");
+        SUITES.put("accesslog", "Chi phí publish vào access log, số record bị bỏ và req/s khi bật/tắt log");
+        SUITES.put("engine", "Engine JDK vs NIO: keep-alive GET và pipelining qua socket thô");
+        SUITES.put("users", "/api/users với 2 triệu user: GET theo id/cursor khi có và không có PUT đồng thời");
+        SUITES.put("json", "Danh sách 1k..100k user: StringBuilder + getBytes vs JsonWriter (TTFB, allocation)");
+        SUITES.put("wal", "User log: PUT/s và record mỗi fsync theo số writer, thời gian khôi phục 2 triệu record");
+        SUITES.put("tls", "HTTPS với connection mới mỗi request: session resume vs full handshake");
+        SUITES.put("restart", "Rolling restart 2 instance dưới tải: số request lỗi khi dừng ngay vs drain");
+        SUITES.put("admission", "p99 của request được nhận khi CPU quá tải: không giới hạn vs admission control");
+        SUITES.put("body", "Đọc body 1..32 MB: readLine + UTF-8 cố định vs BodyReader (MB/s, allocation, đúng nội dung)");
+    }
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Cho phép HttpURLConnection giữ đủ connection keep-alive cho tất cả worker
+        System.setProperty("http.maxConnections", "512");
+
+        String suite = args.length > 0 ? args[0] : "";
+        switch (suite) {
+            case "executor":
+                executorModes();
+                break;
+            case "template":
+                templates();
+                break;
+            case "conditional":
+                conditionalRequests();
+                break;
+            case "compression":
+                compression();
+                break;
+            case "echo":
+                echo();
+                break;
+            case "accesslog":
+                accessLog();
+                break;
+            case "admission":
+                admission();
+                break;
+            case "engine":
+                engines();
+                break;
+            case "users":
+                users();
+                break;
+            case "json":
+                json();
+                break;
+            case "wal":
+                userLog();
+                break;
+            case "tls":
+                tls();
+                break;
+            case "restart":
+                rollingRestart();
+                break;
+            case "body":
+                bodyReading();
+                break;
+            default:
+                System.out.println("Usage: Benchmarks <suite>");
+                SUITES.forEach((name, description) -> System.out.printf("  %-10s %s%n", name, description));
+        }
+    }
+
+    /**
+     * 32 client GET /test liên tục trong khi 4 client gửi POST /echo rất chậm.
+     * Ở chế độ INLINE các POST chậm chặn dispatcher thread nên p99 của GET tăng vọt.
+     */
+    private static void executorModes() throws Exception {
+        byte[] body = "{\"message\": \"slow upload from benchmark\"}".getBytes(StandardCharsets.UTF_8);
+        List<LoadGenerator.Result> results = new ArrayList<>();
+
+        for (WebServer.ExecutionMode mode : WebServer.ExecutionMode.values()) {
+            WebServer server = new WebServer(0, mode);
+            server.start();
+            String base = "http://localhost:" + server.getPort();
+
+            Thread[] slowClients = new Thread[4];
+            for (int i = 0; i < slowClients.length; i++) {
+                slowClients[i] = new Thread(() -> {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        try {
+                            LoadGenerator.slowPost(base + "/echo", body, 4, 50);
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (Exception e) {
+                            // bỏ qua lỗi, tiếp tục gửi
+                        }
+                    }
+                }, "slow-post-" + i);
+                slowClients[i].setDaemon(true);
+                slowClients[i].start();
+            }
+
+            try {
+                results.add(LoadGenerator.run(mode.name(), 32, 1000, 5000,
+                    () -> LoadGenerator.get(base + "/test")));
+            } finally {
+                for (Thread slow : slowClients) {
+                    slow.interrupt();
+                }
+                server.stop();
+            }
+        }
+
+        System.out.println("GET /test, 32 clients, 4 slow POST /echo clients, "
+            + Runtime.getRuntime().availableProcessors() + " CPU(s):");
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * So sánh cách cũ (StringBuilder + getBytes mỗi request) với snapshot byte đã encode sẵn,
+     * cả trong tiến trình (byte cấp phát mỗi lần render) lẫn qua HTTP (req/s).
+     */
+    private static void templates() throws Exception {
+        ResponseTemplate[] templates = {WebServer.HomeHandler.TEMPLATE, WebServer.TestHandler.TEMPLATE};
+        String[] names = {"/", "/test"};
+        int iterations = 200_000;
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        System.out.println("In-process render, " + iterations + " iterations:");
+        for (int t = 0; t < templates.length; t++) {
+            ResponseTemplate template = templates[t];
+            for (int round = 0; round < 2; round++) { // vòng đầu để warm-up JIT
+                long[] legacy = measureAllocations(iterations, () ->
+                    sink.write(template.renderString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8)));
+                long[] precompiled = measureAllocations(iterations, () ->
+                    template.snapshot().writeTo(sink));
+                if (round == 1) {
+                    printAllocationRow(names[t] + " legacy", legacy, iterations);
+                    printAllocationRow(names[t] + " template", precompiled, iterations);
+                }
+            }
+        }
+
+        Class.forName(WebServer.class.getName()); // áp dụng cấu hình socket giống WebServer
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        for (int t = 0; t < templates.length; t++) {
+            ResponseTemplate template = templates[t];
+            server.createContext("/legacy" + names[t], exchange -> {
+                byte[] body = template.renderString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            });
+            server.createContext("/template" + names[t], exchange -> {
+                ResponseTemplate.Snapshot snapshot = template.snapshot();
+                exchange.sendResponseHeaders(200, snapshot.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    snapshot.writeTo(os);
+                }
+            });
+        }
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            System.out.println("HTTP, 8 clients:");
+            for (String name : names) {
+                for (String kind : new String[] {"/legacy", "/template"}) {
+                    String url = base + kind + name;
+                    System.out.println(LoadGenerator.run(kind + name, 8, 1000, 3000, () -> LoadGenerator.get(url)));
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /** Client đã có ETag của /test: so sánh GET đầy đủ với revalidation trả 304. */
+    private static void conditionalRequests() throws Exception {
+        WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getPort() + "/test";
+            HttpURLConnection probe = LoadGenerator.open(url, "GET");
+            String etag = probe.getHeaderField("ETag");
+            LoadGenerator.drain(probe.getInputStream());
+            System.out.println("ETag of /test: " + etag);
+
+            System.out.println(LoadGenerator.run("GET 200", 8, 1000, 3000, () -> LoadGenerator.get(url)));
+            System.out.println(LoadGenerator.run("If-None-Match 304", 8, 1000, 3000, () -> {
+                HttpURLConnection connection = LoadGenerator.open(url, "GET");
+                connection.setRequestProperty("If-None-Match", etag);
+                if (connection.getResponseCode() != 304) {
+                    throw new IOException("expected 304, got " + connection.getResponseCode());
+                }
+                LoadGenerator.drain(connection.getInputStream());
+            }));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Với mỗi endpoint: số byte body trên đường truyền theo từng encoding, và thời gian CPU
+     * để nén body đó một lần (chi phí của nén on-the-fly; biến thể cache chỉ tốn một lần/snapshot).
+     */
+    private static void compression() throws Exception {
+        WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            byte[] echoBody = ("{\"items\": [" + "\"lorem ipsum dolor sit amet\", ".repeat(150) + "\"end\"]}")
+                .getBytes(StandardCharsets.UTF_8);
+            String[][] endpoints = {
+                {"GET", "/", "cached variant"},
+                {"GET", "/test", "cached variant"},
+                {"GET", "/info", "stream"},
+                {"GET", "/api/users", "stream"},
+                {"POST", "/echo", "stream"},
+            };
+            com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            System.out.printf("%-12s %-15s %10s %10s %10s %7s %12s %12s%n", "endpoint", "mode",
+                "identity", "gzip", "deflate", "saved", "gzip CPU", "deflate CPU");
+            for (String[] endpoint : endpoints) {
+                long[] wire = new long[3];
+                byte[] identity = null;
+                String[] encodings = {"identity", "gzip", "deflate"};
+                for (int e = 0; e < encodings.length; e++) {
+                    HttpURLConnection connection = LoadGenerator.open(base + endpoint[1], endpoint[0]);
+                    connection.setRequestProperty("Accept-Encoding", encodings[e]);
+                    if ("POST".equals(endpoint[0])) {
+                        connection.setDoOutput(true);
+                        try (OutputStream os = connection.getOutputStream()) {
+                            os.write(echoBody);
+                        }
+                    }
+                    try (InputStream in = connection.getInputStream()) {
+                        byte[] body = in.readAllBytes();
+                        wire[e] = body.length;
+                        if (e == 0) {
+                            identity = body;
+                        }
+                    }
+                }
+
+                double[] cpuMicros = new double[2];
+                for (int e = 1; e < encodings.length; e++) {
+                    byte[][] parts = {identity};
+                    int iterations = 2000;
+                    for (int i = 0; i < iterations; i++) { // warm-up
+                        CompressionFilter.compress(parts, encodings[e]);
+                    }
+                    long cpuBefore = threads.getCurrentThreadCpuTime();
+                    for (int i = 0; i < iterations; i++) {
+                        CompressionFilter.compress(parts, encodings[e]);
+                    }
+                    cpuMicros[e - 1] = (threads.getCurrentThreadCpuTime() - cpuBefore) / 1000.0 / iterations;
+                }
+                System.out.printf("%-12s %-15s %10d %10d %10d %6.1f%% %9.1f µs %9.1f µs%n",
+                    endpoint[0] + " " + endpoint[1], endpoint[2], wire[0], wire[1], wire[2],
+                    100.0 * (wire[0] - wire[1]) / Math.max(1, wire[0]), cpuMicros[0], cpuMicros[1]);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Upload body lớn lên /echo (echo và summary) và ghi lại heap đỉnh trong lúc xử lý.
+     * Heap đỉnh phải gần như không đổi khi kích thước body tăng.
+     */
+    private static void echo() throws Exception {
+        WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        server.setMaxEchoBytes(1L << 30);
+        server.setCompressionEnabled(false); // đo riêng đường stream
+        server.start();
+        try {
+            byte[] chunk = new byte[64 * 1024];
+            Arrays.fill(chunk, (byte) 'x');
+            System.out.printf("%-8s %10s %10s %14s%n", "mode", "body", "MB/s", "peak heap");
+            for (long size : new long[] {1L << 20, 64L << 20, 512L << 20}) {
+                for (String mode : new String[] {"echo", "summary"}) {
+                    System.gc();
+                    resetHeapPeaks();
+                    long start = System.nanoTime();
+                    long received = rawPost(server.getPort(), "/echo?mode=" + mode, size, chunk);
+                    double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                    System.out.printf("%-8s %7d MB %10.1f %11.1f MB   (response %d bytes)%n", mode, size >> 20,
+                        (size >> 20) / seconds, heapPeakBytes() / (1024.0 * 1024.0), received);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Nhiều thread publish liên tục vào một ring buffer nhỏ (writer không theo kịp nên có
+     * record bị bỏ, nhưng publish không bao giờ chặn), sau đó so sánh req/s qua HTTP
+     * khi tắt và bật access log.
+     */
+    private static void accessLog() throws Exception {
+        Path dir = Files.createTempDirectory("accesslog-bench");
+        URI uri = URI.create("/api/users?page=1");
+        InetSocketAddress remote = new InetSocketAddress(InetAddress.getLoopbackAddress(), 50000);
+        int threads = 4;
+        int perThread = 25_000;
+        // burst: publish liên tục; paced: nghỉ 1 ms sau mỗi 10 record (~40k record/s tổng)
+        for (int pause : new int[] {0, 10}) {
+            AccessLog log = new AccessLog(dir.resolve("server.log"), 1024, 1024 * 1024, 3);
+            double elapsed;
+            try (log) {
+                Thread[] producers = new Thread[threads];
+                long start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    producers[t] = new Thread(() -> {
+                        for (int i = 1; i <= perThread; i++) {
+                            log.publish("GET", uri, remote, 200, 1234, 56_789);
+                            if (pause > 0 && i % pause == 0) {
+                                LockSupport.parkNanos(1_000_000);
+                            }
+                        }
+                    });
+                    producers[t].start();
+                }
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                elapsed = (System.nanoTime() - start) / 1_000_000.0;
+            }
+            // Sau close(): writer đã ghi nốt nên written + dropped = tổng số record
+            System.out.printf("%-6s %d threads x %d: %8.1f ms, written %7d, dropped %7d%n",
+                pause == 0 ? "burst" : "paced", threads, perThread, elapsed, log.written(), log.dropped());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                System.out.printf("  %-14s %8d KB%n", file.getFileName(), Files.size(file) / 1024);
+            }
+        }
+
+        for (boolean enabled : new boolean[] {false, true}) {
+            WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+            server.setAccessLogPath(enabled ? dir.resolve("http.log") : null);
+            server.start();
+            try {
+                String url = "http://localhost:" + server.getPort() + "/api/users";
+                System.out.println(LoadGenerator.run(enabled ? "log on" : "log off", 8, 1000, 3000,
+                    () -> LoadGenerator.get(url)));
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * 64 client gửi POST /echo?mode=summary (upload và SHA-256 của 1 MB trong handler). Không giới hạn thì
+     * mọi request chia nhau CPU và cùng chậm; có admission control thì phần vượt quá nhận 503
+     * ngay (đếm là errors) còn phần được nhận giữ p99 thấp. Vòng đầu chỉ để warm-up JIT.
+     */
+    private static void admission() throws Exception {
+        byte[] body = new byte[1024 * 1024];
+        Arrays.fill(body, (byte) 'x');
+        int[][] limits = {{0, 0, 0}, {0, 0, 0}, {4, 8, 50}, {2, 0, 0}};
+        for (int round = 0; round < limits.length; round++) {
+            int[] limit = limits[round];
+            // BOUNDED_POOL: trên máy ít CPU, virtual thread bị pin khi đọc body nên tự tuần tự hóa
+            WebServer server = new WebServer(0, WebServer.ExecutionMode.BOUNDED_POOL, 128);
+            server.setAccessLogPath(null);
+            server.setAdmissionLimits(limit[0], limit[1], limit[2]);
+            server.start();
+            try {
+                String url = "http://localhost:" + server.getPort() + "/echo?mode=summary";
+                String label = limit[0] == 0 ? "unlimited"
+                    : limit[0] + " in flight/" + limit[1] + " queued/" + limit[2] + "ms";
+                LoadGenerator.Result result = LoadGenerator.run(label, 64, 1000, 4000, () -> {
+                    try {
+                        LoadGenerator.slowPost(url, body, 1, 0);
+                    } catch (IOException e) {
+                        Thread.sleep(50); // client bị từ chối lùi lại một chút trước khi thử lại
+                        throw e;
+                    }
+                });
+                if (round > 0) {
+                    System.out.println(result);
+                }
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * So sánh engine JDK và NIO trên cùng handler: GET /test keep-alive với 8 và 64 client,
+     * và pipelining (mỗi client gửi 32 request liền trên một connection rồi đọc hết response).
+     */
+    private static void engines() throws Exception {
+        Object[][] configs = {
+            {WebServer.Engine.JDK, WebServer.ExecutionMode.VIRTUAL_THREADS},
+            {WebServer.Engine.JDK, WebServer.ExecutionMode.BOUNDED_POOL},
+            {WebServer.Engine.NIO, WebServer.ExecutionMode.VIRTUAL_THREADS},
+        };
+        int depth = 32;
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            batch.append("GET /api/users HTTP/1.1\r\nHost: localhost\r\n")
+                .append(i == depth - 1 ? "Connection: close\r\n" : "").append("\r\n");
+        }
+        byte[] pipelined = batch.toString().getBytes(StandardCharsets.US_ASCII);
+
+        for (int round = 0; round < 2; round++) { // vòng đầu chỉ để warm-up JIT
+            List<LoadGenerator.Result> results = new ArrayList<>();
+            for (Object[] config : configs) {
+                WebServer.Engine engine = (WebServer.Engine) config[0];
+                WebServer.ExecutionMode mode = (WebServer.ExecutionMode) config[1];
+                WebServer server = new WebServer(0, mode, 64, engine);
+                server.setAccessLogPath(null);
+                server.start();
+                try {
+                    String label = engine + "/" + mode;
+                    String url = "http://localhost:" + server.getPort() + "/test";
+                    int port = server.getPort();
+                    results.add(LoadGenerator.run(label + " x8", 8, 500, 2000, () -> LoadGenerator.get(url)));
+                    results.add(LoadGenerator.run(label + " x64", 64, 500, 2000, () -> LoadGenerator.get(url)));
+                    LoadGenerator.Result result = LoadGenerator.run(label + " pipe", 4, 500, 2000,
+                        () -> pipelinedBatch(port, pipelined, depth));
+                    // mỗi lần chạy là một lô depth request: quy đổi ra req/s
+                    results.add(new LoadGenerator.Result(result.label + depth, result.errors, result.seconds / depth,
+                        result.latenciesNanos));
+                } finally {
+                    server.stop();
+                }
+            }
+            if (round == 1) {
+                System.out.println("GET /test keep-alive (x8, x64) và lô pipelined " + depth + " × GET /api/users"
+                    + " (p50/p99 là thời gian cả lô), " + Runtime.getRuntime().availableProcessors() + " CPU(s):");
+                results.forEach(System.out::println);
+            }
+        }
+    }
+
+    /**
+     * Nạp 2 triệu user rồi đo GET /api/users/{id} và trang cursor ngẫu nhiên; lần hai chạy thêm
+     * 2 client PUT liên tục để thấy đọc không bị chặn bởi ghi.
+     */
+    private static void users() throws Exception {
+        int count = 2_000_000;
+        WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        server.setAccessLogPath(null);
+        long start = System.nanoTime();
+        server.seedUsers(count);
+        long seedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("Seed %d user: %d ms, heap đã dùng %d MB%n", count, seedMillis,
+            (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort() + "/api/users";
+            for (boolean writers : new boolean[] {false, true}) {
+                Thread[] writerThreads = new Thread[writers ? 2 : 0];
+                long[] writes = new long[writerThreads.length];
+                AtomicBoolean stop = new AtomicBoolean();
+                for (int w = 0; w < writerThreads.length; w++) {
+                    int index = w;
+                    writerThreads[w] = new Thread(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        while (!stop.get()) {
+                            long id = 1 + random.nextLong(count);
+                            try {
+                                putUser(base + "/" + id, "{\"name\":\"Bench " + id + "\",\"email\":\"bench"
+                                    + id + "@example.com\"}");
+                                writes[index]++;
+                            } catch (IOException e) {
+                                // bỏ qua, chỉ tạo tải ghi
+                            }
+                        }
+                    });
+                    writerThreads[w].start();
+                }
+                String suffix = writers ? " +PUT" : "";
+                List<LoadGenerator.Result> results = new ArrayList<>();
+                results.add(LoadGenerator.run("GET by id" + suffix, 8, 1000, 3000, () ->
+                    LoadGenerator.get(base + "/" + (1 + ThreadLocalRandom.current().nextLong(count)))));
+                results.add(LoadGenerator.run("GET page 50" + suffix, 8, 1000, 3000, () ->
+                    LoadGenerator.get(base + "?limit=50&cursor="
+                        + ThreadLocalRandom.current().nextLong(count))));
+                stop.set(true);
+                for (Thread writer : writerThreads) {
+                    writer.join();
+                }
+                results.forEach(System.out::println);
+                if (writers) {
+                    System.out.println("PUT đã thực hiện: " + (writes[0] + writes[1]));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void putUser(String url, String json) throws IOException {
+        HttpURLConnection connection = LoadGenerator.open(url, "PUT");
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(body);
+        }
+        int code = connection.getResponseCode();
+        LoadGenerator.drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (code >= 400) {
+            throw new IOException("HTTP " + code);
+        }
+    }
+
+    /**
+     * Ghi: N virtual thread cập nhật user ngẫu nhiên, mỗi update chờ fsync; group commit gom
+     * nhiều record vào một lần force. Khôi phục: phát lại 2 triệu record từ log, rồi từ
+     * snapshot cộng phần đuôi.
+     */
+    private static void userLog() throws Exception {
+        Path dir = Files.createTempDirectory("userlog-bench");
+        try {
+            UserStore writeStore = new UserStore();
+            UserLog writeLog = UserLog.open(dir.resolve("write"), writeStore, UserLog.DEFAULT_SEGMENT_BYTES, 0);
+            int base = 100_000;
+            writeStore.seed(base);
+            System.out.println("Update đồng bộ (chờ fsync), " + Runtime.getRuntime().availableProcessors() + " CPU(s):");
+            for (int writers : new int[] {1, 16, 128}) {
+                long records = writeLog.records();
+                long commits = writeLog.commits();
+                AtomicBoolean stop = new AtomicBoolean();
+                LongList latencies = new LongList();
+                Thread[] threads = new Thread[writers];
+                for (int w = 0; w < writers; w++) {
+                    threads[w] = Thread.ofVirtual().start(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        long[] local = new long[1 << 16];
+                        int n = 0;
+                        while (!stop.get()) {
+                            long id = 1 + random.nextLong(base);
+                            long start = System.nanoTime();
+                            try {
+                                writeStore.update(id, "Bench " + id, "user" + id + "@example.com");
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                            if (n < local.length) {
+                                local[n++] = System.nanoTime() - start;
+                            }
+                        }
+                        latencies.addAll(local, n);
+                    });
+                }
+                long start = System.nanoTime();
+                Thread.sleep(3000);
+                stop.set(true);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long written = writeLog.records() - records;
+                long fsyncs = writeLog.commits() - commits;
+                long[] sorted = latencies.sorted();
+                System.out.printf("  %3d writer: %8.0f update/s  %6d fsync  %6.1f record/fsync  p50 %6.2f ms  p99 %6.2f ms%n",
+                    writers, written / seconds, fsyncs, (double) written / Math.max(1, fsyncs),
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6);
+            }
+            writeLog.close();
+
+            int count = 2_000_000;
+            Path recovery = dir.resolve("recovery");
+            UserStore store = new UserStore();
+            UserLog log = UserLog.open(recovery, store, UserLog.DEFAULT_SEGMENT_BYTES, 0);
+            long start = System.nanoTime();
+            store.seed(count);
+            System.out.printf("Ghi %d record (một fsync ở cuối): %d ms, %d MB log%n", count,
+                (System.nanoTime() - start) / 1_000_000, directorySize(recovery) / (1024 * 1024));
+            log.close();
+            store = null;
+            log = null;
+            System.gc();
+
+            UserStore recovered = new UserStore();
+            log = UserLog.open(recovery, recovered, UserLog.DEFAULT_SEGMENT_BYTES, 0);
+            System.out.printf("Khôi phục chỉ từ log:       %d user, %d record trong %d ms%n",
+                recovered.size(), log.recoveredRecords(), log.recoveryMillis());
+            start = System.nanoTime();
+            log.snapshot();
+            System.out.printf("Snapshot: %d ms, %d MB%n", (System.nanoTime() - start) / 1_000_000,
+                Files.size(recovery.resolve("users.snapshot")) / (1024 * 1024));
+            for (long id = 1; id <= 200_000; id++) {
+                recovered.update(id * 10, "Updated " + id, "user" + (id * 10) + "@example.com");
+            }
+            log.close();
+            recovered = null;
+            log = null;
+            System.gc();
+
+            recovered = new UserStore();
+            log = UserLog.open(recovery, recovered, UserLog.DEFAULT_SEGMENT_BYTES, 0);
+            System.out.printf("Khôi phục snapshot + đuôi:  %d user, %d record trong %d ms%n",
+                recovered.size(), log.recoveredRecords(), log.recoveryMillis());
+            log.close();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** Gom latency từ nhiều thread. */
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void addAll(long[] source, int count) {
+            if (size + count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+            }
+            System.arraycopy(source, 0, values, size, count);
+            size += count;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, Math.max(1, size));
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * Serialize n user theo hai cách: dựng cả document bằng StringBuilder rồi getBytes (cách cũ)
+     * và stream bằng JsonWriter. Đo allocation trong process, rồi TTFB và tổng thời gian qua HTTP.
+     */
+    private static void json() throws Exception {
+        int[] sizes = {1_000, 10_000, 100_000};
+        UserStore store = new UserStore();
+        store.seed(sizes[sizes.length - 1]);
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        System.out.println("In-process, allocation mỗi document:");
+        for (int round = 0; round < 2; round++) { // vòng đầu để warm-up JIT
+            for (int n : sizes) {
+                int iterations = Math.max(5, 1_000_000 / n);
+                long[] legacy = measureAllocations(iterations, () ->
+                    sink.write(legacyUsersJson(store, n).getBytes(StandardCharsets.UTF_8)));
+                long[] streaming = measureAllocations(iterations, () -> {
+                    try (JsonWriter json = new JsonWriter(sink)) {
+                        writeUsersJson(json, store, n);
+                    }
+                });
+                if (round == 1) {
+                    printAllocationRow(n + " legacy", legacy, iterations);
+                    printAllocationRow(n + " JsonWriter", streaming, iterations);
+                }
+            }
+        }
+
+        Class.forName(WebServer.class.getName()); // áp dụng cấu hình socket giống WebServer
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/legacy", exchange -> {
+            int n = Integer.parseInt(exchange.getRequestURI().getQuery());
+            byte[] body = legacyUsersJson(store, n).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/stream", exchange -> {
+            int n = Integer.parseInt(exchange.getRequestURI().getQuery());
+            try (JsonWriter json = JsonWriter.forResponse(exchange, 200)) {
+                writeUsersJson(json, store, n);
+            }
+        });
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            System.out.println("HTTP, tuần tự, trung vị của 30 request (sau 10 request warm-up):");
+            for (int n : sizes) {
+                for (String kind : new String[] {"/legacy", "/stream"}) {
+                    String url = base + kind + "?" + n;
+                    long[] ttfb = new long[30];
+                    long[] total = new long[30];
+                    long bytes = 0;
+                    for (int i = -10; i < ttfb.length; i++) {
+                        long start = System.nanoTime();
+                        HttpURLConnection connection = LoadGenerator.open(url, "GET");
+                        try (InputStream in = connection.getInputStream()) {
+                            in.read();
+                            long first = System.nanoTime();
+                            bytes = 1 + LoadGenerator.drain(in);
+                            if (i >= 0) {
+                                ttfb[i] = first - start;
+                                total[i] = System.nanoTime() - start;
+                            }
+                        }
+                    }
+                    Arrays.sort(ttfb);
+                    Arrays.sort(total);
+                    System.out.printf("  %-8s %7d users %9d KB  TTFB %8.2f ms  total %8.2f ms%n", kind, n,
+                        bytes / 1024, ttfb[ttfb.length / 2] / 1e6, total[total.length / 2] / 1e6);
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /** Cách cũ: nối chuỗi cả document rồi mới gửi. */
+    private static String legacyUsersJson(UserStore store, int n) {
+        StringBuilder json = new StringBuilder("{\"users\":[");
+        int written = 0;
+        for (UserStore.User user : store.after(0)) {
+            if (written++ == n) {
+                break;
+            }
+            if (written > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(user.id)
+                .append(",\"name\":\"").append(user.name)
+                .append("\",\"email\":\"").append(user.email)
+                .append("\",\"version\":").append(user.version).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void writeUsersJson(JsonWriter json, UserStore store, int n) throws IOException {
+        json.beginObject().name("users").beginArray();
+        int written = 0;
+        for (UserStore.User user : store.after(0)) {
+            if (written++ == n) {
+                break;
+            }
+            json.beginObject()
+                .field("id", user.id)
+                .field("name", user.name)
+                .field("email", user.email)
+                .field("version", user.version)
+                .endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Body HTML nhiều MB với dòng CRLF và {@code <meta charset="windows-1252">} (không có charset
+     * trong Content-Type). Cách cũ của cả ba tab đọc bằng BufferedReader.readLine với UTF-8 cố
+     * định rồi nối lại "\n"; BodyReader đọc byte vào mảng theo Content-Length rồi giải mã một lần.
+     * Cả hai đọc cùng một HttpURLConnection để chỉ so phần đọc body.
+     */
+    private static void bodyReading() throws Exception {
+        int[] sizesMb = {1, 8, 32};
+        Map<Integer, byte[]> bodies = new HashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        for (int mb : sizesMb) {
+            StringBuilder html = new StringBuilder("<!DOCTYPE html>\r\n<html><head><meta charset=\"windows-1252\">"
+                + "<title>Body " + mb + " MB</title></head>\r\n<body>\r\n");
+            for (int i = 0; html.length() < (mb << 20) - 64; i++) {
+                html.append("<p>Dòng ").append(i).append(": café, naïve, résumé &amp; crème brûlée</p>\r\n");
+            }
+            String text = html.append("</body></html>\r\n").toString();
+            expected.put(mb, text);
+            bodies.put(mb, text.getBytes("windows-1252"));
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/body", exchange -> {
+            byte[] body = bodies.get(Integer.parseInt(exchange.getRequestURI().getQuery()));
+            exchange.getResponseHeaders().set("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort() + "/body?";
+            System.out.println("Tuần tự qua HTTP (keep-alive), allocation tính trên thread đọc:");
+            for (int round = 0; round < 2; round++) { // vòng đầu để warm-up JIT
+                for (int mb : sizesMb) {
+                    int iterations = Math.max(3, 64 / mb);
+                    String[] legacyText = new String[1];
+                    String[] readerText = new String[1];
+                    long[] legacy = measureAllocations(iterations, () -> {
+                        HttpURLConnection connection = LoadGenerator.open(base + mb, "GET");
+                        try (BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                            StringBuilder content = new StringBuilder();
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                content.append(line).append("\n");
+                            }
+                            legacyText[0] = content.toString();
+                        }
+                    });
+                    long[] reader = measureAllocations(iterations, () -> {
+                        HttpURLConnection connection = LoadGenerator.open(base + mb, "GET");
+                        try (InputStream in = connection.getInputStream()) {
+                            byte[] body = BodyReader.readAll(in, connection.getContentLengthLong());
+                            readerText[0] = BodyReader.text(body, connection.getContentType());
+                        }
+                    });
+                    if (round == 1) {
+                        printBodyRow(mb + " MB readLine", legacy, iterations, mb,
+                            legacyText[0].equals(expected.get(mb)));
+                        printBodyRow(mb + " MB BodyReader", reader, iterations, mb,
+                            readerText[0].equals(expected.get(mb)));
+                    }
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void printBodyRow(String label, long[] measurement, int iterations, int mb, boolean exact) {
+        double seconds = measurement[1] / 1_000_000_000.0;
+        System.out.printf("  %-18s %8.1f MB/s  %10.1f MB alloc/op  nội dung %s%n", label,
+            (double) mb * iterations / seconds, measurement[0] / (double) iterations / (1 << 20),
+            exact ? "khớp" : "SAI (CRLF/charset)");
+    }
+
+    /**
+     * Mỗi request mở connection TLS mới (Connection: close) để đo riêng chi phí handshake.
+     * Client "resume" dùng chung một SSLContext nên session được cache và resume;
+     * client "full" tạo SSLContext mới mỗi request nên luôn phải full handshake.
+     */
+    private static void tls() throws Exception {
+        Path dir = Files.createTempDirectory("tls-bench");
+        Path keystore = dir.resolve("server.p12");
+        char[] password = "changeit".toCharArray();
+        WebServer server = new WebServer(0, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        server.setAccessLogPath(null);
+        server.setHttpsPort(0);
+        server.setKeystore(keystore, password);
+        server.start();
+        try {
+            String url = "https://localhost:" + server.getHttpsPort() + "/test";
+            SSLSocketFactory shared = TlsSupport.trustingContext(keystore, password).getSocketFactory();
+            TlsSupport.HandshakeStats stats = server.tlsHandshakes();
+            for (int round = 0; round < 2; round++) { // vòng đầu chỉ để warm-up JIT
+                List<String> rows = new ArrayList<>();
+                for (boolean resume : new boolean[] {true, false}) {
+                    long full = stats.full.sum();
+                    long resumed = stats.resumed.sum();
+                    LoadGenerator.Result result = LoadGenerator.run(resume ? "resume x4" : "full x4", 4, 500, 3000,
+                        () -> tlsGet(url, resume ? shared : TlsSupport.trustingContext(keystore, password)
+                            .getSocketFactory()));
+                    rows.add(result + String.format("  server: full=%d resumed=%d",
+                        stats.full.sum() - full, stats.resumed.sum() - resumed));
+                }
+                if (round == 1) {
+                    System.out.println("GET /test qua HTTPS, connection mới mỗi request, "
+                        + Runtime.getRuntime().availableProcessors() + " CPU(s):");
+                    rows.forEach(System.out::println);
+                    System.out.println("Handshake thất bại: " + stats.failed.sum());
+                }
+            }
+        } finally {
+            server.stop();
+            Files.deleteIfExists(keystore);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void tlsGet(String url, SSLSocketFactory factory) throws IOException {
+        HttpsURLConnection connection = (HttpsURLConnection) LoadGenerator.open(url, "GET");
+        connection.setSSLSocketFactory(factory);
+        connection.setRequestProperty("Connection", "close");
+        int code = connection.getResponseCode();
+        LoadGenerator.drain(connection.getInputStream());
+        if (code != 200) {
+            throw new IOException("HTTP " + code);
+        }
+    }
+
+    /**
+     * Hai instance sau một "load balancer" phía client: mỗi request chọn ngẫu nhiên một
+     * instance, bị từ chối kết nối (request chưa được gửi) thì chuyển sang instance kia.
+     * Trong lúc tải chạy, từng instance lần lượt được stop rồi start lại trên cùng port.
+     * Request là POST upload chậm (không được retry), nên request bị cắt ngang khi dừng
+     * ngay sẽ hiện thành lỗi. Với drain, engine NIO chạy xong mọi request đã nhận (kể cả mới
+     * nhận một phần). Engine JDK không drain được (luôn dừng ngay) nên chỉ đo chế độ hard.
+     */
+    private static void rollingRestart() throws Exception {
+        byte[] body = "{\"message\": \"rolling restart\"}".getBytes(StandardCharsets.UTF_8);
+        System.out.println("POST /echo upload chậm (~40 ms), 16 client, 2 instance x 3 lần restart, "
+            + Runtime.getRuntime().availableProcessors() + " CPU(s):");
+        for (WebServer.Engine engine : WebServer.Engine.values()) {
+            for (Duration timeout : new Duration[] {Duration.ZERO, Duration.ofSeconds(5)}) {
+                if (engine == WebServer.Engine.JDK && !timeout.isZero()) {
+                    continue; // giống hệt hard, xem WebServer.stop(Duration)
+                }
+                int[] ports = {freePort(), freePort()};
+                WebServer[] servers = new WebServer[ports.length];
+                for (int i = 0; i < servers.length; i++) {
+                    servers[i] = new WebServer(ports[i], WebServer.ExecutionMode.VIRTUAL_THREADS, engine);
+                    servers[i].setAccessLogPath(null);
+                    servers[i].start();
+                }
+                AtomicBoolean done = new AtomicBoolean();
+                LongAdder succeeded = new LongAdder();
+                LongAdder failed = new LongAdder();
+                LongAdder rerouted = new LongAdder();
+                Thread[] clients = new Thread[16];
+                for (int c = 0; c < clients.length; c++) {
+                    clients[c] = new Thread(() -> {
+                        while (!done.get()) {
+                            int first = ThreadLocalRandom.current().nextInt(ports.length);
+                            for (int attempt = 0; ; attempt++) {
+                                String url = "http://localhost:" + ports[(first + attempt) % ports.length] + "/echo";
+                                try {
+                                    LoadGenerator.slowPost(url, body, 2, 20);
+                                    succeeded.increment();
+                                    break;
+                                } catch (ConnectException e) {
+                                    rerouted.increment(); // chưa gửi gì: an toàn để gửi sang instance khác
+                                    if (attempt >= ports.length) {
+                                        LockSupport.parkNanos(10_000_000);
+                                    }
+                                } catch (Exception e) {
+                                    failed.increment();
+                                    break;
+                                }
+                            }
+                        }
+                    }, "restart-client-" + c);
+                    clients[c].start();
+                }
+
+                Thread.sleep(1000);
+                long drained = 0;
+                long aborted = 0;
+                long stopMillis = 0;
+                int restarts = 0;
+                for (int round = 0; round < 3; round++) {
+                    for (WebServer server : servers) {
+                        WebServer.ShutdownReport report = server.stop(timeout);
+                        drained += report.getDrained();
+                        aborted += report.getAborted();
+                        stopMillis += report.getMillis();
+                        restarts++;
+                        Thread.sleep(200);
+                        server.start();
+                        Thread.sleep(500);
+                    }
+                }
+                done.set(true);
+                for (Thread client : clients) {
+                    client.join();
+                }
+                for (WebServer server : servers) {
+                    server.stop(Duration.ofSeconds(5));
+                }
+                System.out.printf("%-4s %-8s ok=%d failed=%d rerouted=%d | server: drained=%d aborted=%d, stop %.0f ms avg%n",
+                    engine, timeout.isZero() ? "hard" : "drain 5s", succeeded.sum(), failed.sum(), rerouted.sum(),
+                    drained, aborted, stopMillis / (double) restarts);
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** Gửi cả lô request pipelined trong một lần write rồi đọc tới EOF; kiểm tra đủ số response. */
+    private static void pipelinedBatch(int port, byte[] requests, int expected) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(requests);
+            byte[] all = socket.getInputStream().readAllBytes();
+            String text = new String(all, StandardCharsets.ISO_8859_1);
+            int responses = 0;
+            for (int i = text.indexOf("HTTP/1.1 200"); i >= 0; i = text.indexOf("HTTP/1.1 200", i + 1)) {
+                responses++;
+            }
+            if (responses != expected) {
+                throw new IOException("expected " + expected + " responses, got " + responses);
+            }
+        }
+    }
+
+    /**
+     * POST qua socket thô: một thread ghi body trong khi thread hiện tại đọc response.
+     * HttpURLConnection ghi hết body rồi mới đọc, sẽ deadlock với một echo dạng stream.
+     * @return số byte response (cả header) đã đọc
+     */
+    private static long rawPost(int port, String path, long size, byte[] chunk) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream os = socket.getOutputStream();
+            Thread writer = new Thread(() -> {
+                try {
+                    os.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n"
+                        + "Content-Type: application/octet-stream\r\nContent-Length: " + size + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                    for (long sent = 0; sent < size; sent += chunk.length) {
+                        os.write(chunk, 0, (int) Math.min(chunk.length, size - sent));
+                    }
+                    os.flush();
+                } catch (IOException e) {
+                    // server đã đóng kết nối (ví dụ 413)
+                }
+            }, "raw-post-writer");
+            writer.start();
+            long received = LoadGenerator.drain(socket.getInputStream());
+            writer.join();
+            return received;
+        }
+    }
+
+    private static void resetHeapPeaks() {
+        for (java.lang.management.MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == java.lang.management.MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapPeakBytes() {
+        long peak = 0;
+        for (java.lang.management.MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == java.lang.management.MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    /** @return {byte cấp phát trên thread hiện tại, thời gian nanos} */
+    private static long[] measureAllocations(int iterations, Action action) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[] {threads.getCurrentThreadAllocatedBytes() - allocatedBefore, elapsed};
+    }
+
+    private static void printAllocationRow(String label, long[] measurement, int iterations) {
+        System.out.printf("  %-18s %10.1f bytes/op  %12.0f ops/s%n", label,
+            measurement[0] / (double) iterations, iterations / (measurement[1] / 1_000_000_000.0));
+    }
+}
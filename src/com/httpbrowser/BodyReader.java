@@ -0,0 +1,387 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Body Reader - đọc body dạng byte và giải mã text đúng một lần cho {@link HttpTransport}.
+ *
+ * Body được chép thẳng vào một mảng cấp phát theo {@code Content-Length} (hoặc kích thước gốc
+ * ghi trong trailer gzip), chỉ nới ra khi server gửi nhiều hơn hoặc không báo trước độ dài;
+ * không tách dòng nên CRLF và nội dung nhị phân giữ nguyên. Charset được xác định trong một
+ * lượt quét: BOM, rồi {@code charset=} của Content-Type, rồi {@code <meta charset>} /
+ * {@code <meta http-equiv="Content-Type">} trong {@link #SNIFF_BYTES} byte đầu, mặc định UTF-8.
+ *
+ * Body vượt ngưỡng spill của request không nằm trên heap mà được ghi thẳng ra file tạm
+ * ({@link Body#file}); người gọi xem qua {@link LargeTextViewer} và tự xóa file khi xong.
+ */
+final class BodyReader {
+    /** Số byte đầu được quét tìm thẻ meta, như prescan của HTML5. */
+    static final int SNIFF_BYTES = 1024;
+    /** Không cấp phát trước quá mức này dù Content-Length lớn hơn (server có thể báo sai). */
+    static final int MAX_PRESIZE = 64 << 20;
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+    private static final int MIN_CAPACITY = 8192;
+
+    private BodyReader() {
+    }
+
+    /** Body đã nhận: trong bộ nhớ ({@link #bytes}) hoặc trong file tạm ({@link #file}). */
+    static final class Body {
+        final byte[] bytes;
+        final Path file;
+        final long length;
+
+        Body(byte[] bytes) {
+            this.bytes = bytes;
+            this.file = null;
+            this.length = bytes.length;
+        }
+
+        Body(Path file, long length) {
+            this.bytes = new byte[0];
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    /**
+     * BodyHandler gom body vào một mảng cấp phát theo Content-Length; body dài hơn
+     * {@code spillThreshold} byte (báo trước hoặc nhận dần) được ghi ra file tạm.
+     */
+    static HttpResponse.BodyHandler<Body> handler(long spillThreshold) {
+        return info -> new Subscriber(contentLength(info.headers()), spillThreshold);
+    }
+
+    /** File tạm cho body lớn; xóa khi JVM thoát nếu người dùng chưa xóa. */
+    static Path createSpillFile() throws IOException {
+        Path file = Files.createTempFile("http-body-", ".tmp");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /** Xóa file tạm của body; file còn đang được map (Windows) thì để tới khi JVM thoát. */
+    static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // đã đăng ký deleteOnExit khi tạo
+            }
+        }
+    }
+
+    /** @return Content-Length, hoặc -1 nếu không có / không hợp lệ */
+    static long contentLength(HttpHeaders headers) {
+        try {
+            return headers.firstValueAsLong("Content-Length").orElse(-1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Đọc hết stream.
+     * @param expectedLength số byte dự kiến (-1 nếu không biết), chỉ dùng để cấp phát
+     */
+    static byte[] readAll(InputStream in, long expectedLength) throws IOException {
+        return read(in, expectedLength, Long.MAX_VALUE).bytes;
+    }
+
+    /**
+     * Đọc hết stream vào bộ nhớ; vượt {@code spillThreshold} byte thì ghi toàn bộ ra file tạm.
+     * @param expectedLength số byte dự kiến (-1 nếu không biết), chỉ dùng để cấp phát
+     */
+    static Body read(InputStream in, long expectedLength, long spillThreshold) throws IOException {
+        Buffer buffer = new Buffer(Math.min(expectedLength, spillThreshold));
+        while (buffer.count <= spillThreshold) {
+            if (buffer.count == buffer.bytes.length) {
+                // Mảng vừa đầy (thường là đúng Content-Length): thử một byte trước khi nới
+                int next = in.read();
+                if (next < 0) {
+                    return new Body(buffer.toByteArray());
+                }
+                buffer.ensureSpace();
+                buffer.bytes[buffer.count++] = (byte) next;
+            }
+            int read = in.read(buffer.bytes, buffer.count, buffer.bytes.length - buffer.count);
+            if (read < 0) {
+                return new Body(buffer.toByteArray());
+            }
+            buffer.count += read;
+        }
+        Path file = createSpillFile();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(buffer.bytes, 0, buffer.count);
+            return new Body(file, buffer.count + in.transferTo(out));
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    /** Body dạng text: bỏ BOM (nếu có) và giải mã một lần theo {@link #charset(String, byte[])}. */
+    static String text(byte[] body, String contentType) {
+        int bom = bomLength(body);
+        return new String(body, bom, body.length - bom, charset(contentType, body));
+    }
+
+    /** Charset của body đã spill ra file: chỉ đọc {@link #SNIFF_BYTES} byte đầu để dò. */
+    static Charset charset(String contentType, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return charset(contentType, in.readNBytes(SNIFF_BYTES));
+        }
+    }
+
+    /** Charset của body: BOM, charset trong Content-Type, thẻ meta trong HTML, mặc định UTF-8. */
+    static Charset charset(String contentType, byte[] body) {
+        Charset bom = bomCharset(body);
+        if (bom != null) {
+            return bom;
+        }
+        Charset declared = headerCharset(contentType);
+        if (declared != null) {
+            return declared;
+        }
+        if (contentType == null || contentType.toLowerCase(Locale.ROOT).contains("html")) {
+            Charset meta = metaCharset(body);
+            if (meta != null) {
+                return meta;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /** Charset trong Content-Type ({@code charset=...}), null nếu không có hoặc không hỗ trợ. */
+    static Charset headerCharset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                String trimmed = param.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return forName(trimmed.substring(8).replace("\"", "").trim());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Charset bomCharset(byte[] body) {
+        if (body.length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFE && (body[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    private static int bomLength(byte[] body) {
+        Charset bom = bomCharset(body);
+        return bom == null ? 0 : bom == StandardCharsets.UTF_8 ? 3 : 2;
+    }
+
+    /**
+     * Tìm {@code charset=} trong thẻ meta đầu tiên có khai báo, quét byte (ASCII) không tạo String
+     * cho phần còn lại của body. Bao cả {@code <meta charset="x">} và
+     * {@code <meta http-equiv="Content-Type" content="text/html; charset=x">}.
+     */
+    static Charset metaCharset(byte[] body) {
+        int end = Math.min(body.length, SNIFF_BYTES);
+        for (int i = 0; i < end; i++) {
+            if (body[i] != '<' || !matches(body, i + 1, end, "meta")) {
+                continue;
+            }
+            int tagEnd = i + 5;
+            while (tagEnd < end && body[tagEnd] != '>') {
+                tagEnd++;
+            }
+            for (int j = i + 5; j < tagEnd; j++) {
+                if (!matches(body, j, tagEnd, "charset")) {
+                    continue;
+                }
+                int k = j + 7;
+                while (k < tagEnd && body[k] == ' ') {
+                    k++;
+                }
+                if (k == tagEnd || body[k] != '=') {
+                    continue;
+                }
+                k++;
+                while (k < tagEnd && (body[k] == ' ' || body[k] == '"' || body[k] == '\'')) {
+                    k++;
+                }
+                int start = k;
+                while (k < tagEnd && body[k] != '"' && body[k] != '\'' && body[k] != ';' && body[k] != ' ' && body[k] != '/') {
+                    k++;
+                }
+                Charset charset = forName(new String(body, start, k - start, StandardCharsets.US_ASCII));
+                if (charset != null) {
+                    // HTML5: thẻ meta khai báo UTF-16 nhưng đã đọc được bằng ASCII thì thực ra là UTF-8
+                    return charset.name().startsWith("UTF-16") ? StandardCharsets.UTF_8 : charset;
+                }
+            }
+            i = tagEnd;
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] body, int offset, int end, String lowerCase) {
+        if (offset + lowerCase.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if ((body[offset + i] | 0x20) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset forName(String name) {
+        try {
+            return name.isEmpty() ? null : Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Mảng byte nới gấp đôi khi đầy; cấp phát lần đầu đúng bằng độ dài dự kiến. */
+    private static final class Buffer {
+        byte[] bytes;
+        int count;
+
+        Buffer(long expectedLength) {
+            bytes = new byte[(int) Math.max(0, Math.min(expectedLength, MAX_PRESIZE))];
+        }
+
+        void ensureSpace() throws IOException {
+            if (count < bytes.length) {
+                return;
+            }
+            if (count == MAX_ARRAY) {
+                throw new IOException("Body too large (> " + MAX_ARRAY + " bytes)");
+            }
+            int grown = (int) Math.min(MAX_ARRAY, Math.max(MIN_CAPACITY, 2L * count));
+            bytes = Arrays.copyOf(bytes, grown);
+        }
+
+        void put(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                ensureSpace();
+                int n = Math.min(source.remaining(), bytes.length - count);
+                source.get(bytes, count, n);
+                count += n;
+            }
+        }
+
+        byte[] toByteArray() {
+            return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+        }
+    }
+
+    /**
+     * BodySubscriber chép từng ByteBuffer vào {@link Buffer}, hoặc vào file tạm khi vượt ngưỡng
+     * spill; onNext được gọi tuần tự.
+     */
+    private static final class Subscriber implements HttpResponse.BodySubscriber<Body> {
+        private final CompletableFuture<Body> result = new CompletableFuture<>();
+        private final long spillThreshold;
+        private Buffer buffer;
+        private Path file;
+        private FileChannel channel;
+        private long length;
+        private Flow.Subscription subscription;
+
+        Subscriber(long contentLength, long spillThreshold) {
+            this.spillThreshold = spillThreshold;
+            buffer = new Buffer(contentLength > spillThreshold ? 0 : contentLength);
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (ByteBuffer item : items) {
+                    length += item.remaining();
+                    if (channel == null && length > spillThreshold) {
+                        spill();
+                    }
+                    if (channel != null) {
+                        while (item.hasRemaining()) {
+                            channel.write(item);
+                        }
+                    } else {
+                        buffer.put(item);
+                    }
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                discard();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            discard();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (channel == null) {
+                result.complete(new Body(buffer.toByteArray()));
+                return;
+            }
+            try {
+                channel.close();
+                result.complete(new Body(file, length));
+            } catch (IOException e) {
+                discard();
+                result.completeExceptionally(e);
+            }
+        }
+
+        /** Chuyển sang ghi file: phần đã nhận trong bộ nhớ được ghi trước. */
+        private void spill() throws IOException {
+            file = createSpillFile();
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            ByteBuffer received = ByteBuffer.wrap(buffer.bytes, 0, buffer.count);
+            while (received.hasRemaining()) {
+                channel.write(received);
+            }
+            buffer = null;
+        }
+
+        private void discard() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // bỏ qua
+                }
+                deleteQuietly(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.httpbrowser;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffer Pool - pool các ByteBuffer (mặc định direct) cùng kích thước.
+ *
+ * Direct buffer cấp phát và giải phóng tốn kém (ngoài heap, dọn bằng Cleaner), nên
+ * các buffer được trả lại pool để dùng lại. Pool giữ tối đa {@code maxPooled} buffer
+ * rảnh; buffer trả về khi pool đã đầy thì bị bỏ cho GC.
+ */
+final class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final boolean direct;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this(bufferSize, maxPooled, true);
+    }
+
+    BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize < 1 || maxPooled < 0) {
+            throw new IllegalArgumentException("bufferSize must be >= 1 and maxPooled >= 0");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+    }
+
+    /** Lấy một buffer đã clear (position 0, limit = capacity). */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            reused.increment();
+            return buffer;
+        }
+        allocated.increment();
+        return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+
+    /** Trả buffer về pool; không được dùng buffer sau khi đã trả. */
+    void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            return;
+        }
+        buffer.clear();
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /** Số buffer đã phải cấp phát mới (không lấy được từ pool). */
+    long allocated() {
+        return allocated.sum();
+    }
+
+    long reused() {
+        return reused.sum();
+    }
+}
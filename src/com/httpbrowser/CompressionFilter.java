@@ -0,0 +1,204 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Compression Filter - nén response theo Accept-Encoding (gzip, deflate).
+ *
+ * Filter chọn encoding cho request và bọc exchange; handler đọc lại bằng {@link #negotiated}.
+ * (Không dùng attribute: HttpServer của JDK lưu attribute theo HttpContext, dùng chung mọi
+ * request.) Handler có nội dung cố định (ví dụ snapshot của template) có thể tự gửi biến thể đã nén
+ * sẵn; khi đó header Content-Encoding đã có và filter không nén lại. Các response động
+ * còn lại được nén dạng stream (chunked) ngay khi ghi.
+ */
+final class CompressionFilter extends Filter {
+    static final int DEFAULT_MIN_SIZE = 1024;
+
+    // Thứ tự ưu tiên khi client chấp nhận với cùng q-value
+    private static final String[] SUPPORTED = {"gzip", "deflate"};
+
+    private final int minSize;
+
+    CompressionFilter() {
+        this(DEFAULT_MIN_SIZE);
+    }
+
+    /** @param minSize response có độ dài biết trước nhỏ hơn ngưỡng này sẽ không bị nén */
+    CompressionFilter(int minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    public String description() {
+        return "Negotiated gzip/deflate response compression";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (encoding == null) {
+            chain.doFilter(exchange);
+            return;
+        }
+        chain.doFilter(new CompressingExchange(exchange, encoding, minSize));
+    }
+
+    /**
+     * Encoding đã thương lượng cho exchange này, hoặc null nếu gửi identity (hoặc tắt nén).
+     * Filter nén đứng cuối chain nên handler nhận đúng exchange đã bọc.
+     */
+    static String negotiated(HttpExchange exchange) {
+        return exchange instanceof CompressingExchange ? ((CompressingExchange) exchange).encoding : null;
+    }
+
+    /**
+     * Chọn encoding tốt nhất từ header Accept-Encoding (có hỗ trợ q-value và "*").
+     * @return "gzip", "deflate" hoặc null (identity)
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        Map<String, Double> weights = new HashMap<>();
+        Double wildcard = null;
+        for (String item : acceptEncoding.split(",")) {
+            String[] params = item.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("*".equals(coding)) {
+                wildcard = q;
+            } else if ("x-gzip".equals(coding)) {
+                weights.put("gzip", q);
+            } else {
+                weights.put(coding, q);
+            }
+        }
+        String best = null;
+        double bestQ = 0;
+        for (String coding : SUPPORTED) {
+            Double q = weights.containsKey(coding) ? weights.get(coding) : wildcard;
+            if (q != null && q > bestQ) {
+                best = coding;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    /** Nén toàn bộ các đoạn byte (dùng cho biến thể đã nén sẵn của nội dung cố định). */
+    static byte[] compress(byte[][] parts, String encoding) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = wrap(buffer, encoding)) {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // không xảy ra với ByteArrayOutputStream
+        }
+        return buffer.toByteArray();
+    }
+
+    /** ETag của biến thể đã nén phải khác ETag của bản identity. */
+    static String variantEtag(String etag, String encoding) {
+        if (etag == null || encoding == null) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+            || type.contains("json")
+            || type.contains("javascript")
+            || type.contains("xml");
+    }
+
+    /** syncFlush = true để flush() của handler (slow-drip, streaming) đẩy dữ liệu ra ngay. */
+    private static OutputStream wrap(OutputStream out, String encoding) throws IOException {
+        if ("gzip".equals(encoding)) {
+            return new GZIPOutputStream(out, 8192, true);
+        }
+        return new DeflaterOutputStream(out, true);
+    }
+
+    private static final class CompressingExchange extends ForwardingExchange {
+        private final String encoding;
+        private final int minSize;
+        private boolean compress;
+        private OutputStream compressed;
+
+        CompressingExchange(HttpExchange delegate, String encoding, int minSize) {
+            super(delegate);
+            this.encoding = encoding;
+            this.minSize = minSize;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            Headers headers = getResponseHeaders();
+            compress = rCode == 200
+                && responseLength >= 0
+                && (responseLength == 0 || responseLength >= minSize)
+                && !"HEAD".equals(getRequestMethod())
+                && !headers.containsKey("Content-Encoding")
+                && !headers.containsKey("Content-Range")
+                && isCompressible(headers.getFirst("Content-Type"));
+            if (!compress) {
+                delegate.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+            headers.set("Content-Encoding", encoding);
+            headers.add("Vary", "Accept-Encoding");
+            headers.remove("Content-Length");
+            String etag = headers.getFirst("ETag");
+            if (etag != null) {
+                headers.set("ETag", variantEtag(etag, encoding));
+            }
+            delegate.sendResponseHeaders(rCode, 0); // độ dài sau khi nén chưa biết -> chunked
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            if (!compress) {
+                return delegate.getResponseBody();
+            }
+            if (compressed == null) {
+                try {
+                    compressed = wrap(delegate.getResponseBody(), encoding);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return compressed;
+        }
+
+        @Override
+        public void close() {
+            if (compressed != null) {
+                try {
+                    compressed.close(); // ghi trailer gzip/deflate
+                } catch (IOException e) {
+                    // client đã ngắt kết nối
+                }
+            }
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.IOException;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Conditional Requests - xử lý validator (ETag / Last-Modified) dùng chung cho các handler.
+ *
+ * Handler cung cấp ETag và thời điểm sửa đổi của nội dung đã cache; lớp này áp dụng
+ * header validator và quyết định có trả 304 Not Modified hay không (RFC 7232).
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /** Định dạng thời điểm theo IMF-fixdate, ví dụ {@code Sun, 18 Oct 2026 05:58:05 GMT}. */
+    static String formatDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    /** @return epoch millis, hoặc -1 nếu không parse được */
+    static long parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /** Tạo strong ETag từ độ dài và checksum nội dung. */
+    static String etag(long length, long checksum) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(checksum) + "\"";
+    }
+
+    static void applyValidators(Headers headers, String etag, String lastModified) {
+        if (etag != null) {
+            headers.set("ETag", etag);
+        }
+        if (lastModified != null) {
+            headers.set("Last-Modified", lastModified);
+        }
+    }
+
+    /**
+     * Kiểm tra If-None-Match / If-Modified-Since của request GET hoặc HEAD.
+     * Theo RFC 7232, If-Modified-Since bị bỏ qua khi có If-None-Match.
+     */
+    static boolean isNotModified(HttpExchange exchange, String etag, long lastModifiedMillis) {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        Headers request = exchange.getRequestHeaders();
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matchesAny(ifNoneMatch, etag);
+        }
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null && lastModifiedMillis > 0) {
+            long since = parseDate(ifModifiedSince);
+            // HTTP date chỉ chính xác tới giây
+            return since >= 0 && lastModifiedMillis / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    /** Gửi 304 kèm validator; không có body. */
+    static void sendNotModified(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().remove("Content-Type");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+    }
+
+    /** So khớp weak theo RFC 7232 cho danh sách ETag trong If-None-Match. */
+    static boolean matchesAny(String headerValue, String etag) {
+        String target = stripWeak(etag);
+        for (String candidate : headerValue.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate) || stripWeak(candidate).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,169 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Content Decoders - giải mã Content-Encoding của response cho {@link HttpTransport}.
+ *
+ * Mỗi coding là một {@link Decoder} bọc InputStream, nên chuỗi nhiều coding
+ * ({@code Content-Encoding: deflate, gzip}) được giải theo thứ tự ngược mà không tạo mảng trung
+ * gian cho từng lớp. Header {@code Accept-Encoding} được sinh từ chính danh sách đã đăng ký:
+ * chỉ quảng cáo coding giải được (hiện là gzip và deflate; br cần thư viện ngoài, có thể
+ * {@link #register} khi có). Coding không đăng ký trong response là lỗi, không hiện body rác.
+ */
+final class ContentDecoders {
+    /** Bọc stream đã mã hóa thành stream đã giải mã. */
+    @FunctionalInterface
+    interface Decoder {
+        InputStream wrap(InputStream in) throws IOException;
+    }
+
+    /** coding (chữ thường) → decoder, theo thứ tự đăng ký. */
+    private static final Map<String, Decoder> DECODERS = new LinkedHashMap<>();
+    /** Tên chính được đưa vào Accept-Encoding (không gồm alias như x-gzip). */
+    private static final Set<String> ADVERTISED = new LinkedHashSet<>();
+
+    static {
+        register("gzip", GZIPInputStream::new, true);
+        register("x-gzip", GZIPInputStream::new, false);
+        register("deflate", ContentDecoders::inflate, true);
+    }
+
+    private ContentDecoders() {
+    }
+
+    /**
+     * Đăng ký (hoặc thay) decoder cho một coding.
+     * @param advertise có đưa coding vào Accept-Encoding hay không (false cho alias)
+     */
+    static synchronized void register(String coding, Decoder decoder, boolean advertise) {
+        String name = coding.trim().toLowerCase(Locale.ROOT);
+        DECODERS.put(name, Objects.requireNonNull(decoder));
+        if (advertise) {
+            ADVERTISED.add(name);
+        }
+    }
+
+    static synchronized boolean supports(String coding) {
+        String name = coding.trim().toLowerCase(Locale.ROOT);
+        return name.equals("identity") || DECODERS.containsKey(name);
+    }
+
+    /** Giá trị Accept-Encoding mặc định, ví dụ {@code gzip, deflate}. */
+    static synchronized String acceptEncoding() {
+        return String.join(", ", ADVERTISED);
+    }
+
+    /**
+     * Bỏ khỏi Accept-Encoding do người dùng đặt những coding không giải được (kể cả {@code *}).
+     * @return danh sách còn lại, hoặc {@code identity} nếu không còn gì
+     */
+    static String restrictToSupported(String acceptEncoding) {
+        StringJoiner kept = new StringJoiner(", ");
+        for (String item : acceptEncoding.split(",")) {
+            String coding = item.split(";", 2)[0].trim();
+            if (!coding.isEmpty() && !coding.equals("*") && supports(coding)) {
+                kept.add(item.trim());
+            }
+        }
+        return kept.length() == 0 ? "identity" : kept.toString();
+    }
+
+    /** Các coding trong Content-Encoding theo thứ tự đã áp dụng, bỏ identity. */
+    static List<String> codings(String contentEncoding) {
+        List<String> codings = new ArrayList<>();
+        if (contentEncoding != null) {
+            for (String coding : contentEncoding.split(",")) {
+                String name = coding.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !name.equals("identity")) {
+                    codings.add(name);
+                }
+            }
+        }
+        return codings;
+    }
+
+    /**
+     * Bọc stream bằng decoder của từng coding, coding áp dụng sau cùng được giải trước.
+     * @throws IOException nếu có coding chưa đăng ký
+     */
+    static InputStream decode(InputStream in, List<String> codings) throws IOException {
+        InputStream decoded = in;
+        for (int i = codings.size() - 1; i >= 0; i--) {
+            Decoder decoder;
+            synchronized (ContentDecoders.class) {
+                decoder = DECODERS.get(codings.get(i));
+            }
+            if (decoder == null) {
+                throw new IOException("Unsupported Content-Encoding: " + codings.get(i));
+            }
+            decoded = decoder.wrap(decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Giải mã cả body (trong bộ nhớ hoặc đã spill ra file). Kết quả dài hơn
+     * {@code spillThreshold} được ghi ra file tạm mới, kể cả khi body nén đủ nhỏ để nằm trong bộ
+     * nhớ (gzip của text lặp lại có thể nén hàng trăm lần). Không có coding nào thì trả nguyên
+     * {@code raw}; ngược lại người gọi tự xóa file của {@code raw} (nếu có).
+     */
+    static BodyReader.Body decode(BodyReader.Body raw, String contentEncoding, long spillThreshold) throws IOException {
+        List<String> codings = codings(contentEncoding);
+        if (raw.length == 0 || codings.isEmpty()) {
+            return raw;
+        }
+        InputStream encoded = raw.file != null
+            ? new BufferedInputStream(Files.newInputStream(raw.file), 1 << 16) : new ByteArrayInputStream(raw.bytes);
+        try (InputStream in = decode(encoded, codings)) {
+            return BodyReader.read(in, expectedLength(raw, codings), spillThreshold);
+        } catch (ZipException | EOFException e) {
+            throw new IOException("Corrupt " + String.join(", ", codings) + " body: " + e.getMessage(), e);
+        } finally {
+            encoded.close();
+        }
+    }
+
+    /**
+     * Kích thước dự kiến sau giải mã để cấp phát một lần: ISIZE ở cuối gzip (kích thước gốc
+     * mod 2^32, đúng khi chỉ có một lớp gzip); deflate nén tối đa ~1032:1 nên body nhỏ không thể
+     * bắt cấp phát lớn. Còn lại ước lượng gấp 4.
+     */
+    private static long expectedLength(BodyReader.Body body, List<String> codings) {
+        if (body.file != null) {
+            return 4L * body.length;
+        }
+        byte[] raw = body.bytes;
+        int n = raw.length;
+        if (codings.size() == 1 && codings.get(0).endsWith("gzip") && n >= 4) {
+            long isize = (raw[n - 4] & 0xFFL) | (raw[n - 3] & 0xFFL) << 8
+                | (raw[n - 2] & 0xFFL) << 16 | (raw[n - 1] & 0xFFL) << 24;
+            return Math.min(1032L * n, isize);
+        }
+        return 4L * n;
+    }
+
+    /** "deflate" đúng chuẩn là zlib, nhưng nhiều server gửi deflate thô (không header). */
+    private static InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream peek = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int read = peek.readNBytes(header, 0, 2);
+        peek.unread(header, 0, read);
+        boolean zlib = read == 2 && (header[0] & 0x0F) == 8
+            && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(peek, inflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end(); // Inflater tự tạo không được InflaterInputStream giải phóng
+                }
+            }
+        };
+    }
+}
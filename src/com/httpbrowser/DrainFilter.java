@@ -0,0 +1,77 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Drain Filter - đếm request đang xử lý để {@link WebServer#stop(java.time.Duration)} dừng êm.
+ *
+ * Đứng đầu chain của mọi context (cả HTTP và HTTPS). Khi đã vào trạng thái drain, mọi
+ * response gửi đi đều kèm {@code Connection: close}: client keep-alive không gửi tiếp
+ * request lên một connection sắp bị đóng mà mở connection mới (tới instance khác hoặc
+ * tới server sau khi khởi động lại). Request kết thúc bình thường trong lúc drain được
+ * tính là drained; request kết thúc bằng lỗi (connection bị đóng khi hết hạn chờ) là aborted.
+ */
+final class DrainFilter extends Filter {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private volatile boolean draining;
+
+    @Override
+    public String description() {
+        return "Graceful drain (Connection: close while stopping)";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        inFlight.incrementAndGet();
+        boolean completed = false;
+        try {
+            chain.doFilter(new DrainingExchange(exchange));
+            completed = true;
+        } finally {
+            inFlight.decrementAndGet();
+            if (draining) {
+                // Lỗi lúc đang dừng thường là do connection đã bị đóng khi hết hạn chờ
+                (completed ? drained : aborted).increment();
+            }
+        }
+    }
+
+    /** Bắt đầu drain: từ giờ response nào chưa gửi header cũng đóng connection sau khi xong. */
+    void startDraining() {
+        draining = true;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    long drained() {
+        return drained.sum();
+    }
+
+    long aborted() {
+        return aborted.sum();
+    }
+
+    /**
+     * Kiểm tra cờ drain lúc gửi header chứ không phải lúc request vào, để cả request đã
+     * vào handler trước khi stop cũng đóng connection của nó.
+     */
+    private final class DrainingExchange extends ForwardingExchange {
+        DrainingExchange(HttpExchange delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (draining) {
+                getResponseHeaders().set("Connection", "close");
+            }
+            super.sendResponseHeaders(rCode, responseLength);
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * HTTP Cache - cache response phía client (private cache theo RFC 7234) dùng chung cho các tab.
+ *
+ * Hai tầng, mỗi tầng là LRU có giới hạn tổng số byte: tầng bộ nhớ giữ entry đã giải mã để trả
+ * về ngay, tầng đĩa (mỗi entry một file) giữ lại được giữa các lần chạy. Entry lấy từ đĩa được
+ * đưa lên tầng bộ nhớ; entry bị đẩy khỏi bộ nhớ vẫn còn trên đĩa.
+ *
+ * Chỉ lưu response của GET. Độ tươi tính từ {@code Cache-Control: max-age}, {@code Expires} hoặc
+ * heuristic 10% tuổi của {@code Last-Modified}; tuổi tính theo mục 4.2.3 (Date, Age, thời gian
+ * request/response). Entry hết tươi (hoặc {@code no-cache}) được xác nhận lại bằng
+ * If-None-Match / If-Modified-Since; 304 cập nhật header và dùng lại body. Request không an toàn
+ * (POST, PUT, DELETE...) thành công làm mất hiệu lực entry của URI đó.
+ */
+final class HttpCache {
+    /** Response đi qua cache thế nào. */
+    enum Status { NONE, MISS, HIT, REVALIDATED }
+
+    private static final int MAGIC = 0x48434531; // "HCE1"
+    private static final long MAX_HEURISTIC_MILLIS = TimeUnit.HOURS.toMillis(24);
+    /** Status được phép cache theo heuristic (RFC 7231 mục 6.1). */
+    private static final Set<Integer> HEURISTIC_STATUSES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+    /** Header của 304 không được ghi đè lên entry (mô tả body, không phải metadata). */
+    private static final Set<String> BODY_HEADERS = Set.of("content-length", "content-encoding", "transfer-encoding");
+
+    /** Một response đã lưu; body đã giải nén. */
+    static final class Entry {
+        final String key;
+        final int statusCode;
+        final Map<String, List<String>> headers;
+        final Map<String, String> vary;
+        final byte[] body;
+        final long requestTime;
+        final long responseTime;
+
+        Entry(String key, int statusCode, Map<String, List<String>> headers, Map<String, String> vary,
+              byte[] body, long requestTime, long responseTime) {
+            this.key = key;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.vary = vary;
+            this.body = body;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+        }
+
+        String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : String.join(", ", values);
+        }
+
+        long size() {
+            long size = body.length + 64;
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    size += header.getKey().length() + value.length() + 4;
+                }
+            }
+            return size;
+        }
+    }
+
+    private final long memoryBudget;
+    private final long diskBudget;
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    /** Tên file -> kích thước, thứ tự LRU (nạp từ thời điểm sửa file khi dùng đĩa lần đầu). */
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+    private boolean diskLoaded;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param directory thư mục tầng đĩa, null để chỉ dùng bộ nhớ
+     */
+    HttpCache(long memoryBudget, Path directory, long diskBudget) {
+        if (memoryBudget < 0 || diskBudget < 0) {
+            throw new IllegalArgumentException("budgets must be >= 0");
+        }
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        this.diskBudget = directory == null ? 0 : diskBudget;
+    }
+
+    /** Khóa cache: URI bỏ fragment. */
+    static String key(URI uri) {
+        String value = uri.toString();
+        int hash = value.indexOf('#');
+        return hash < 0 ? value : value.substring(0, hash);
+    }
+
+    /**
+     * Tìm entry cho URI khớp các header Vary của request.
+     * @param requestHeader giá trị (đã gộp) của một header trong request, null nếu không có
+     */
+    Entry lookup(String key, UnaryOperator<String> requestHeader) {
+        Entry entry;
+        Path file = null;
+        synchronized (this) {
+            entry = memory.get(key);
+            if (entry == null && diskBudget > 0) {
+                loadDiskIndex();
+                String name = fileName(key);
+                if (disk.get(name) != null) {
+                    file = directory.resolve(name);
+                }
+            }
+        }
+        if (entry == null && file != null) {
+            entry = readEntry(file, key);
+            if (entry != null) {
+                touch(file);
+                synchronized (this) {
+                    putMemory(entry);
+                }
+            }
+        }
+        if (entry == null || !varyMatches(entry, requestHeader)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Entry còn dùng được mà không cần hỏi server: không có {@code no-cache} ở request/response,
+     * tuổi hiện tại nhỏ hơn thời gian tươi và không vượt {@code max-age} của request.
+     */
+    boolean isFresh(Entry entry, String requestCacheControl, long now) {
+        Map<String, String> request = directives(requestCacheControl);
+        Map<String, String> response = directives(entry.header("Cache-Control"));
+        if (request.containsKey("no-cache") || response.containsKey("no-cache")) {
+            return false;
+        }
+        long age = currentAge(entry, now);
+        long requestMaxAge = seconds(request.get("max-age"));
+        if (requestMaxAge >= 0 && age > requestMaxAge * 1000) {
+            return false;
+        }
+        return freshnessLifetime(entry) > age;
+    }
+
+    /** Header điều kiện (If-None-Match / If-Modified-Since) để xác nhận lại entry. */
+    static List<String[]> validators(Entry entry) {
+        List<String[]> headers = new ArrayList<>(2);
+        String etag = entry.header("ETag");
+        if (etag != null) {
+            headers.add(new String[] {"If-None-Match", etag});
+        }
+        String lastModified = entry.header("Last-Modified");
+        if (lastModified != null) {
+            headers.add(new String[] {"If-Modified-Since", lastModified});
+        }
+        return headers;
+    }
+
+    static boolean hasValidators(Entry entry) {
+        return entry.header("ETag") != null || entry.header("Last-Modified") != null;
+    }
+
+    /**
+     * Lưu response của GET nếu được phép cache.
+     * @return true nếu đã lưu
+     */
+    boolean store(String key, UnaryOperator<String> requestHeader, int statusCode, Map<String, List<String>> responseHeaders,
+                  byte[] body, long requestTime, long responseTime) {
+        Map<String, List<String>> headers = copyHeaders(responseHeaders);
+        Map<String, String> vary = varyValues(headers, requestHeader);
+        if (vary == null || !isStorable(statusCode, headers, requestHeader)) {
+            return false;
+        }
+        describeDecodedBody(headers, body.length);
+        Entry entry = new Entry(key, statusCode, headers, vary, body, requestTime, responseTime);
+        if (freshnessLifetime(entry) <= 0 && !hasValidators(entry)) {
+            // Không tươi và không xác nhận lại được: lưu cũng vô ích
+            return false;
+        }
+        put(entry);
+        stores.increment();
+        return true;
+    }
+
+    /** Server trả 304: cập nhật header và thời gian của entry, giữ body. */
+    Entry refresh(Entry entry, Map<String, List<String>> notModifiedHeaders, long requestTime, long responseTime) {
+        Map<String, List<String>> headers = copyHeaders(entry.headers);
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+            if (!BODY_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                headers.put(header.getKey(), List.copyOf(header.getValue()));
+            }
+        }
+        Entry updated = new Entry(entry.key, entry.statusCode, headers, entry.vary, entry.body, requestTime, responseTime);
+        put(updated);
+        return updated;
+    }
+
+    /** Bỏ entry của URI (sau request không an toàn thành công). */
+    void invalidate(String key) {
+        boolean onDisk;
+        String name = fileName(key);
+        synchronized (this) {
+            Entry removed = memory.remove(key);
+            if (removed != null) {
+                memoryBytes -= removed.size();
+            }
+            if (diskBudget > 0) {
+                loadDiskIndex();
+            }
+            Long size = disk.remove(name);
+            onDisk = size != null;
+            if (onDisk) {
+                diskBytes -= size;
+            }
+        }
+        if (onDisk) {
+            deleteQuietly(directory.resolve(name));
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordRevalidated() {
+        revalidated.increment();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long revalidations() {
+        return revalidated.sum();
+    }
+
+    /** Ví dụ: {@code hit 12, revalidated 3, miss 5, stored 6, evicted 0; memory 120 KB (4), disk 380 KB (6)}. */
+    synchronized String stats() {
+        return String.format("hit %d, revalidated %d, miss %d, stored %d, evicted %d; memory %d KB (%d), disk %d KB (%d)",
+            hits.sum(), revalidated.sum(), misses.sum(), stores.sum(), evictions.sum(),
+            memoryBytes / 1024, memory.size(), diskBytes / 1024, disk.size());
+    }
+
+    // ---- RFC 7234 ----
+
+    /** Thời gian tươi (ms), mục 4.2.1; cache này là private nên bỏ qua s-maxage. */
+    static long freshnessLifetime(Entry entry) {
+        long maxAge = seconds(directives(entry.header("Cache-Control")).get("max-age"));
+        if (maxAge >= 0) {
+            return maxAge * 1000;
+        }
+        long date = dateOf(entry);
+        String expires = entry.header("Expires");
+        if (expires != null) {
+            // Expires không hợp lệ (vd "0") được coi là đã hết hạn
+            long expiresAt = ConditionalRequests.parseDate(expires);
+            return expiresAt < 0 ? 0 : Math.max(0, expiresAt - date);
+        }
+        long lastModified = ConditionalRequests.parseDate(entry.header("Last-Modified"));
+        if (lastModified > 0 && HEURISTIC_STATUSES.contains(entry.statusCode) && date > lastModified) {
+            return Math.min((date - lastModified) / 10, MAX_HEURISTIC_MILLIS);
+        }
+        return 0;
+    }
+
+    /** Tuổi hiện tại (ms), mục 4.2.3. */
+    static long currentAge(Entry entry, long now) {
+        long apparentAge = Math.max(0, entry.responseTime - dateOf(entry));
+        long ageValue = Math.max(0, seconds(entry.header("Age"))) * 1000;
+        long correctedAge = ageValue + (entry.responseTime - entry.requestTime);
+        return Math.max(apparentAge, correctedAge) + (now - entry.responseTime);
+    }
+
+    /**
+     * Tách directive của Cache-Control: tên viết thường -> giá trị (bỏ dấu nháy), "" nếu không có.
+     */
+    static Map<String, String> directives(String cacheControl) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> directives = new HashMap<>();
+        for (String part : cacheControl.split(",")) {
+            String directive = part.trim();
+            if (directive.isEmpty()) {
+                continue;
+            }
+            int equals = directive.indexOf('=');
+            if (equals < 0) {
+                directives.put(directive.toLowerCase(Locale.ROOT), "");
+            } else {
+                directives.put(directive.substring(0, equals).trim().toLowerCase(Locale.ROOT),
+                    directive.substring(equals + 1).trim().replace("\"", ""));
+            }
+        }
+        return directives;
+    }
+
+    private boolean isStorable(int statusCode, Map<String, List<String>> headers, UnaryOperator<String> requestHeader) {
+        Map<String, String> request = directives(requestHeader.apply("Cache-Control"));
+        String responseCacheControl = headers.get("Cache-Control") == null ? null : String.join(",", headers.get("Cache-Control"));
+        Map<String, String> response = directives(responseCacheControl);
+        if (request.containsKey("no-store") || response.containsKey("no-store")) {
+            return false;
+        }
+        if (requestHeader.apply("Authorization") != null && !response.containsKey("public")
+                && !response.containsKey("must-revalidate")) {
+            return false;
+        }
+        boolean explicit = response.containsKey("max-age") || headers.containsKey("Expires");
+        return HEURISTIC_STATUSES.contains(statusCode) || (explicit && statusCode >= 200 && statusCode < 400
+            && statusCode != 206 && statusCode != 304);
+    }
+
+    /** Giá trị của các header request được liệt kê trong Vary; null nếu {@code Vary: *} (không cache được). */
+    private static Map<String, String> varyValues(Map<String, List<String>> headers, UnaryOperator<String> requestHeader) {
+        List<String> vary = headers.get("Vary");
+        if (vary == null) {
+            return Map.of();
+        }
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String line : vary) {
+            for (String name : line.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.equals("*")) {
+                    return null;
+                }
+                if (!trimmed.isEmpty()) {
+                    String value = requestHeader.apply(trimmed);
+                    values.put(trimmed, value == null ? "" : value);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static boolean varyMatches(Entry entry, UnaryOperator<String> requestHeader) {
+        for (Map.Entry<String, String> vary : entry.vary.entrySet()) {
+            String value = requestHeader.apply(vary.getKey());
+            if (!vary.getValue().equals(value == null ? "" : value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long dateOf(Entry entry) {
+        long date = ConditionalRequests.parseDate(entry.header("Date"));
+        return date < 0 ? entry.responseTime : date;
+    }
+
+    /** Số giây không âm, -1 nếu không có hoặc không hợp lệ. */
+    private static long seconds(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            // Quá lớn thì coi như vô hạn (RFC 7234 mục 1.2.1), còn lại là không hợp lệ
+            return value.trim().chars().allMatch(Character::isDigit) ? Integer.MAX_VALUE : -1;
+        }
+    }
+
+    /**
+     * Body lưu đã giải nén, nên header mô tả body phải khớp với nó chứ không phải với bản trên
+     * đường truyền: bỏ Content-Encoding / Transfer-Encoding, Content-Length là độ dài đã giải nén.
+     */
+    private static void describeDecodedBody(Map<String, List<String>> headers, int length) {
+        headers.remove("Content-Encoding");
+        headers.remove("Transfer-Encoding");
+        headers.put("Content-Length", List.of(Integer.toString(length)));
+    }
+
+    private static Map<String, List<String>> copyHeaders(Map<String, List<String>> headers) {
+        Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() != null && !header.getKey().startsWith(":")) {
+                copy.put(header.getKey(), List.copyOf(header.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    // ---- hai tầng LRU ----
+
+    private void put(Entry entry) {
+        long size = entry.size();
+        List<String> evicted = new ArrayList<>();
+        boolean toDisk = size <= diskBudget / 4;
+        synchronized (this) {
+            putMemory(entry);
+            if (!toDisk && diskBudget > 0) {
+                // Entry mới quá lớn cho đĩa: bản cũ (nếu có) trên đĩa đã lỗi thời
+                loadDiskIndex();
+                Long old = disk.remove(fileName(entry.key));
+                if (old != null) {
+                    diskBytes -= old;
+                    evicted.add(fileName(entry.key));
+                }
+            }
+        }
+        if (toDisk) {
+            writeEntry(entry, evicted);
+        }
+        for (String name : evicted) {
+            deleteQuietly(directory.resolve(name));
+        }
+    }
+
+    /** Gọi khi đang giữ lock. */
+    private void putMemory(Entry entry) {
+        Entry old = memory.remove(entry.key);
+        if (old != null) {
+            memoryBytes -= old.size();
+        }
+        long size = entry.size();
+        if (size > memoryBudget / 4) {
+            return;
+        }
+        memory.put(entry.key, entry);
+        memoryBytes += size;
+        Iterator<Entry> lru = memory.values().iterator();
+        while (memoryBytes > memoryBudget && lru.hasNext()) {
+            Entry eldest = lru.next();
+            lru.remove();
+            memoryBytes -= eldest.size();
+        }
+    }
+
+    private void writeEntry(Entry entry, List<String> evicted) {
+        String name = fileName(entry.key);
+        Path file = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        long size;
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(entry.key);
+                out.writeInt(entry.statusCode);
+                out.writeLong(entry.requestTime);
+                out.writeLong(entry.responseTime);
+                out.writeInt(entry.headers.size());
+                for (Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().size());
+                    for (String value : header.getValue()) {
+                        out.writeUTF(value);
+                    }
+                }
+                out.writeInt(entry.vary.size());
+                for (Map.Entry<String, String> vary : entry.vary.entrySet()) {
+                    out.writeUTF(vary.getKey());
+                    out.writeUTF(vary.getValue());
+                }
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            }
+            size = Files.size(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Tầng đĩa chỉ là tối ưu: lỗi ghi (đĩa đầy, header quá dài...) thì bỏ qua
+            deleteQuietly(temp);
+            return;
+        }
+        synchronized (this) {
+            loadDiskIndex();
+            Long old = disk.put(name, size);
+            diskBytes += size - (old == null ? 0 : old);
+            Iterator<Map.Entry<String, Long>> lru = disk.entrySet().iterator();
+            while (diskBytes > diskBudget && lru.hasNext()) {
+                Map.Entry<String, Long> eldest = lru.next();
+                if (eldest.getKey().equals(name)) {
+                    continue;
+                }
+                lru.remove();
+                diskBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Entry readEntry(Path file, String key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                return null;
+            }
+            int statusCode = in.readInt();
+            long requestTime = in.readLong();
+            long responseTime = in.readLong();
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                List<String> values = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, List.copyOf(values));
+            }
+            Map<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = in.readInt(); i > 0; i--) {
+                vary.put(in.readUTF(), in.readUTF());
+            }
+            byte[] body = in.readNBytes(in.readInt());
+            describeDecodedBody(headers, body.length); // file ghi trước khi header được chuẩn hóa
+            return new Entry(key, statusCode, headers, vary, body, requestTime, responseTime);
+        } catch (IOException | RuntimeException e) {
+            // File hỏng hoặc bị xóa giữa chừng: coi như miss
+            return null;
+        }
+    }
+
+    /** Gọi khi đang giữ lock; nạp danh sách file một lần, LRU theo thời điểm dùng gần nhất. */
+    private void loadDiskIndex() {
+        if (diskLoaded) {
+            return;
+        }
+        diskLoaded = true;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.entry")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            return;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path file : files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+                sizes.put(file, Files.size(file));
+            } catch (IOException e) {
+                // file vừa bị xóa
+            }
+        }
+        files.removeIf(file -> !sizes.containsKey(file));
+        files.sort(Comparator.comparing(modified::get));
+        for (Path file : files) {
+            disk.put(file.getFileName().toString(), sizes.get(file));
+            diskBytes += sizes.get(file);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // chỉ ảnh hưởng thứ tự LRU lần chạy sau
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // bỏ qua
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + ".entry";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
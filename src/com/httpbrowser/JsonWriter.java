@@ -0,0 +1,330 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * JSON Writer - ghi JSON dạng UTF-8 thẳng vào OutputStream qua một buffer dùng lại.
+ *
+ * Không dựng String trung gian: chuỗi được escape và mã hóa UTF-8 ngay vào buffer lấy từ
+ * pool, đầy thì đẩy xuống stream. Với {@link #forResponse} header chỉ được gửi khi cần:
+ * document vừa trong một buffer thì trả với Content-Length, lớn hơn thì chuyển sang chunked
+ * ngay lần flush đầu tiên, nên time-to-first-byte và bộ nhớ không phụ thuộc số phần tử.
+ *
+ * Không thread-safe; gọi {@link #close()} để trả buffer về pool.
+ */
+final class JsonWriter implements Closeable, Flushable {
+    static final int BUFFER_SIZE = 8 * 1024;
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, 256, false);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final HttpExchange exchange; // != null: header gửi lúc flush đầu tiên
+    private final int status;
+    private OutputStream out;
+    private ByteBuffer pooled;
+    private byte[] buffer;
+    private int count;
+
+    // Mỗi cấp lồng nhau: đã có phần tử chưa (để chèn dấu phẩy)
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(OutputStream out) {
+        this(out, null, 0);
+    }
+
+    private JsonWriter(OutputStream out, HttpExchange exchange, int status) {
+        this.out = out;
+        this.exchange = exchange;
+        this.status = status;
+        this.pooled = BUFFERS.acquire();
+        this.buffer = pooled.array();
+    }
+
+    /**
+     * Writer cho body của response: Content-Type JSON được đặt ngay, còn status và header
+     * được gửi khi buffer đầy lần đầu (chunked) hoặc lúc close (Content-Length).
+     */
+    static JsonWriter forResponse(HttpExchange exchange, int status) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        return new JsonWriter(null, exchange, status);
+    }
+
+    JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    JsonWriter name(String name) throws IOException {
+        separator();
+        string(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        separator();
+        string(value);
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        separator();
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        ensure(20);
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+        return this;
+    }
+
+    JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue(); // JSON không có NaN/Infinity
+        }
+        separator();
+        ascii(Double.toString(value));
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        separator();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        separator();
+        write(NULL);
+        return this;
+    }
+
+    /** Cặp name/value tiện dụng. */
+    JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /** Đẩy phần đã ghi xuống stream (với response: gửi header chunked nếu chưa gửi). */
+    @Override
+    public void flush() throws IOException {
+        drain(false);
+        out.flush();
+    }
+
+    /** Ghi nốt buffer, đóng stream của response và trả buffer về pool. */
+    @Override
+    public void close() throws IOException {
+        if (pooled == null) {
+            return;
+        }
+        try {
+            if (depth != 0) {
+                // Document dở dang (lỗi giữa chừng): không gửi phần còn lại như một response hợp lệ
+                if (out != null && exchange != null) {
+                    out.close();
+                }
+                throw new IOException("incomplete JSON document (depth " + depth + ")");
+            }
+            drain(true);
+            if (exchange != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } finally {
+            BUFFERS.release(pooled);
+            pooled = null;
+            buffer = null;
+        }
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separator();
+        writeByte(bracket);
+        if (++depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth] = false;
+        return this;
+    }
+
+    private JsonWriter end(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("unbalanced '" + bracket + "'");
+        }
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    /** Dấu phẩy giữa các phần tử; không chèn ngay sau name. */
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElements[depth]) {
+            writeByte(',');
+        } else {
+            hasElements[depth] = true;
+        }
+    }
+
+    /** Escape và mã hóa UTF-8 trực tiếp vào buffer. */
+    private void string(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        int i = 0;
+        // Đường nhanh: ký tự ASCII không cần escape, chép thẳng khi buffer còn đủ chỗ
+        if (count + length < buffer.length) {
+            byte[] bytes = buffer;
+            int position = count;
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80 || c < 0x20 || c == '"' || c == '\\') {
+                    break;
+                }
+                bytes[position++] = (byte) c;
+            }
+            count = position;
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    if (count == buffer.length) {
+                        drain(false);
+                    }
+                    buffer[count++] = (byte) c;
+                } else {
+                    escape(c);
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                escape(c); // surrogate lẻ: giữ nguyên dưới dạng \\uXXXX
+            } else {
+                ensure(3);
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void escape(char c) throws IOException {
+        ensure(6);
+        buffer[count++] = '\\';
+        switch (c) {
+            case '"' -> buffer[count++] = '"';
+            case '\\' -> buffer[count++] = '\\';
+            case '\n' -> buffer[count++] = 'n';
+            case '\r' -> buffer[count++] = 'r';
+            case '\t' -> buffer[count++] = 't';
+            case '\b' -> buffer[count++] = 'b';
+            case '\f' -> buffer[count++] = 'f';
+            default -> {
+                buffer[count++] = 'u';
+                buffer[count++] = HEX[(c >> 12) & 0xF];
+                buffer[count++] = HEX[(c >> 8) & 0xF];
+                buffer[count++] = HEX[(c >> 4) & 0xF];
+                buffer[count++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void ascii(String text) throws IOException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[count++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeByte(char c) throws IOException {
+        if (count == buffer.length) {
+            drain(false);
+        }
+        buffer[count++] = (byte) c;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (count + bytes > buffer.length) {
+            drain(false);
+        }
+    }
+
+    /**
+     * Ghi buffer xuống stream. Với response chưa gửi header: lúc kết thúc thì biết được độ dài,
+     * còn giữa chừng thì phải chuyển sang chunked.
+     */
+    private void drain(boolean last) throws IOException {
+        if (out == null) {
+            exchange.sendResponseHeaders(status, last ? (count > 0 ? count : -1) : 0);
+            out = exchange.getResponseBody();
+        }
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
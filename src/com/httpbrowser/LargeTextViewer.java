@@ -0,0 +1,383 @@
+package com.httpbrowser;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Large Text Viewer - xem body rất lớn (nhiều GB) mà không nạp vào JTextArea.
+ *
+ * File được memory-map theo từng đoạn {@link #CHUNK_BYTES} (nằm ngoài heap, hệ điều hành tự
+ * phân trang). Một thread nền lập chỉ mục dòng thưa: chỉ lưu offset của mỗi dòng thứ
+ * {@link #INDEX_STRIDE}, nên 100 triệu dòng tốn khoảng 12 MB. Khi vẽ, chỉ các dòng đang hiện
+ * trên màn hình mới được giải mã thành String. Dòng dài hơn {@link #MAX_ROW_BYTES} byte được
+ * ngắt thành nhiều hàng để việc tìm cuối dòng luôn có giới hạn (JSON minify một dòng vẫn cuộn mượt).
+ *
+ * Thanh cuộn đếm theo hàng chứ không theo pixel, nên không bị giới hạn chiều cao int của
+ * JComponent. Hàng được tách theo {@code '\n'} trên byte với charset tương thích ASCII
+ * (UTF-8, ISO-8859-x, windows-125x...) và trên đơn vị 2 byte với UTF-16; BOM đầu file được
+ * bỏ qua. Charset khác chỉ hiện được với body trong bộ nhớ (chuyển sang UTF-8 trước).
+ */
+final class LargeTextViewer extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    static final long CHUNK_BYTES = 1L << 30;
+    static final int INDEX_STRIDE = 64;
+    static final int MAX_ROW_BYTES = 4096;
+    private static final int TAB_WIDTH = 4;
+
+    private final RowCanvas canvas = new RowCanvas();
+    private final JScrollBar vertical = new JScrollBar(JScrollBar.VERTICAL);
+    private final JScrollBar horizontal = new JScrollBar(JScrollBar.HORIZONTAL);
+    private final JLabel status = new JLabel(" ");
+
+    private transient Text text;
+
+    LargeTextViewer() {
+        super(new BorderLayout());
+        add(canvas, BorderLayout.CENTER);
+        add(vertical, BorderLayout.EAST);
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(horizontal, BorderLayout.NORTH);
+        status.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+        south.add(status, BorderLayout.SOUTH);
+        add(south, BorderLayout.SOUTH);
+
+        vertical.addAdjustmentListener(e -> canvas.repaint());
+        horizontal.addAdjustmentListener(e -> canvas.repaint());
+        canvas.addMouseWheelListener(e -> {
+            JScrollBar bar = e.isShiftDown() ? horizontal : vertical;
+            int unit = e.isShiftDown() ? bar.getUnitIncrement() : 1;
+            bar.setValue(bar.getValue() + e.getWheelRotation() * e.getScrollAmount() * unit);
+        });
+        canvas.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateScrollBars();
+            }
+        });
+        canvas.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                canvas.requestFocusInWindow();
+            }
+        });
+        canvas.setFocusable(true);
+        bindKey("UP", () -> vertical.setValue(vertical.getValue() - 1));
+        bindKey("DOWN", () -> vertical.setValue(vertical.getValue() + 1));
+        bindKey("PAGE_UP", () -> vertical.setValue(vertical.getValue() - visibleRows()));
+        bindKey("PAGE_DOWN", () -> vertical.setValue(vertical.getValue() + visibleRows()));
+        bindKey("ctrl HOME", () -> vertical.setValue(0));
+        bindKey("ctrl END", () -> vertical.setValue(vertical.getMaximum()));
+        bindKey("LEFT", () -> horizontal.setValue(horizontal.getValue() - horizontal.getUnitIncrement()));
+        bindKey("RIGHT", () -> horizontal.setValue(horizontal.getValue() + horizontal.getUnitIncrement()));
+        clear();
+    }
+
+    /**
+     * Hiện nội dung file (map chỉ đọc); lập chỉ mục chạy nền, có thể cuộn ngay phần đã lập.
+     * @throws IOException nếu không đọc được file hoặc charset không tách được hàng theo byte
+     */
+    void open(Path file, Charset charset) throws IOException {
+        if (!supports(charset)) {
+            throw new IOException("Không hiển thị được body lớn với charset " + charset.name());
+        }
+        ByteBuffer[] chunks;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            chunks = new ByteBuffer[(int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = i * CHUNK_BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_BYTES, size - offset));
+            }
+        }
+        show(new Text(chunks, size, charset));
+    }
+
+    /** Hiện body nhỏ đã có trong bộ nhớ bằng cùng một cách hiển thị. */
+    void open(byte[] bytes, Charset charset) {
+        if (!supports(charset)) {
+            String decoded = new String(bytes, charset);
+            bytes = (decoded.startsWith("\uFEFF") ? decoded.substring(1) : decoded).getBytes(StandardCharsets.UTF_8);
+            charset = StandardCharsets.UTF_8;
+        }
+        show(new Text(new ByteBuffer[] {ByteBuffer.wrap(bytes)}, bytes.length, charset));
+    }
+
+    /** Charset tách hàng được mà không giải mã: tương thích ASCII ở CR/LF/tab, hoặc UTF-16. */
+    static boolean supports(Charset charset) {
+        if (isUtf16(charset)) {
+            return true;
+        }
+        try {
+            return charset.canEncode() && Arrays.equals("\n\r\t".getBytes(charset), new byte[] {'\n', '\r', '\t'});
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static boolean isUtf16(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_16) || charset.equals(StandardCharsets.UTF_16BE)
+            || charset.equals(StandardCharsets.UTF_16LE);
+    }
+
+    /** Bỏ nội dung đang hiện (và dừng lập chỉ mục); vùng map được giải phóng khi GC thu hồi. */
+    void clear() {
+        show(new Text(new ByteBuffer[] {ByteBuffer.allocate(0)}, 0, StandardCharsets.UTF_8));
+    }
+
+    private void show(Text next) {
+        if (text != null) {
+            text.cancelled = true;
+        }
+        text = next;
+        vertical.setValue(0);
+        horizontal.setValue(0);
+        updateScrollBars();
+        canvas.repaint();
+        if (!next.indexed) {
+            Thread indexer = new Thread(() -> next.index(this::indexProgress), "large-text-index");
+            indexer.setDaemon(true);
+            indexer.setPriority(Thread.MIN_PRIORITY);
+            indexer.start();
+        }
+    }
+
+    /** Gọi từ thread lập chỉ mục; cập nhật thanh cuộn trên EDT. */
+    private void indexProgress(Text source) {
+        SwingUtilities.invokeLater(() -> {
+            if (source == text) {
+                updateScrollBars();
+                canvas.repaint();
+            }
+        });
+    }
+
+    private void updateScrollBars() {
+        Text current = text;
+        int rows = (int) Math.min(Integer.MAX_VALUE - 1, current.rowCount);
+        int visible = Math.max(1, visibleRows());
+        vertical.setValues(Math.min(vertical.getValue(), Math.max(0, rows - visible)), visible, 0, Math.max(rows, visible));
+        vertical.setBlockIncrement(visible);
+        FontMetrics metrics = canvas.getFontMetrics(canvas.getFont());
+        int charWidth = metrics.charWidth('m');
+        int width = Math.max(1, canvas.getWidth());
+        int contentWidth = current.maxRowBytes / current.unit * charWidth + 2 * RowCanvas.PADDING;
+        horizontal.setValues(Math.min(horizontal.getValue(), Math.max(0, contentWidth - width)), width, 0,
+            Math.max(contentWidth, width));
+        horizontal.setUnitIncrement(charWidth * 4);
+        horizontal.setBlockIncrement(width);
+
+        long shown = current.rowCount;
+        status.setText(String.format("%,d dòng%s - %.1f MB%s", shown, current.indexed ? "" : String.format(
+            " (đang lập chỉ mục %.0f%%)", current.size == 0 ? 100 : 100.0 * current.indexedBytes / current.size),
+            current.size / (1024.0 * 1024.0), current.maxRowBytes >= MAX_ROW_BYTES ? " - dòng dài được ngắt" : ""));
+    }
+
+    private int visibleRows() {
+        int lineHeight = canvas.getFontMetrics(canvas.getFont()).getHeight();
+        return Math.max(1, canvas.getHeight() / Math.max(1, lineHeight));
+    }
+
+    private void bindKey(String keyStroke, Runnable action) {
+        canvas.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(keyStroke), keyStroke);
+        canvas.getActionMap().put(keyStroke, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    /** Vùng vẽ: chỉ giải mã các hàng từ giá trị thanh cuộn dọc tới hết chiều cao. */
+    private final class RowCanvas extends JComponent {
+        private static final long serialVersionUID = 1L;
+        static final int PADDING = 4;
+
+        RowCanvas() {
+            setFont(new Font("Monospaced", Font.PLAIN, 12));
+            setOpaque(true);
+            setBackground(Color.WHITE);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            Text current = text;
+            if (current.rowCount == 0) {
+                return;
+            }
+            FontMetrics metrics = g.getFontMetrics(getFont());
+            g.setColor(Color.BLACK);
+            g.setFont(getFont());
+            int lineHeight = metrics.getHeight();
+            int x = PADDING - horizontal.getValue();
+            int y = metrics.getAscent();
+            long row = vertical.getValue();
+            long offset = current.rowStart(row);
+            byte[] scratch = new byte[MAX_ROW_BYTES];
+            while (y - metrics.getAscent() < getHeight() && row < current.rowCount && offset < current.size) {
+                long end = current.rowEnd(offset);
+                g.drawString(current.decode(offset, end, scratch), x, y);
+                offset = current.nextRowStart(offset, end);
+                row++;
+                y += lineHeight;
+            }
+        }
+    }
+
+    /**
+     * Nội dung đã map cùng chỉ mục hàng thưa. Chỉ thread lập chỉ mục ghi; EDT đọc qua các field
+     * volatile, nên checkpoint được ghi trước khi {@link #rowCount} tăng.
+     */
+    private static final class Text {
+        final ByteBuffer[] chunks;
+        final long size;
+        final Charset charset;
+        final boolean utf8;
+        final int unit; // số byte của một đơn vị mã: 2 với UTF-16, 1 với charset tương thích ASCII
+        final boolean bigEndian;
+        final long start; // sau BOM
+        volatile long[] checkpoints = new long[1024];
+        volatile long rowCount;
+        volatile long indexedBytes;
+        volatile int maxRowBytes;
+        volatile boolean indexed;
+        volatile boolean cancelled;
+
+        Text(ByteBuffer[] chunks, long size, Charset charset) {
+            this.chunks = chunks;
+            this.utf8 = charset.equals(StandardCharsets.UTF_8);
+            this.unit = isUtf16(charset) ? 2 : 1;
+            int b0 = size >= 2 ? chunks[0].get(0) & 0xFF : -1;
+            int b1 = size >= 2 ? chunks[0].get(1) & 0xFF : -1;
+            if (unit == 2) {
+                // "UTF-16" không rõ thứ tự byte: theo BOM, không có BOM thì big-endian
+                boolean bomBE = b0 == 0xFE && b1 == 0xFF;
+                boolean bomLE = b0 == 0xFF && b1 == 0xFE;
+                this.bigEndian = charset.equals(StandardCharsets.UTF_16LE) ? false
+                    : charset.equals(StandardCharsets.UTF_16BE) || !bomLE;
+                this.start = (bigEndian ? bomBE : bomLE) ? 2 : 0;
+                this.charset = bigEndian ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE;
+                this.size = size - (size - start) % 2; // bỏ byte lẻ cuối của UTF-16 hỏng
+            } else {
+                this.bigEndian = true;
+                this.start = utf8 && size >= 3 && b0 == 0xEF && b1 == 0xBB && (chunks[0].get(2) & 0xFF) == 0xBF ? 3 : 0;
+                this.charset = charset;
+                this.size = size;
+            }
+            this.checkpoints[0] = start;
+            this.indexed = this.size <= start;
+        }
+
+        byte byteAt(long position) {
+            return chunks[(int) (position / CHUNK_BYTES)].get((int) (position % CHUNK_BYTES));
+        }
+
+        /** Đơn vị mã (byte, hoặc char UTF-16) bắt đầu ở {@code position}. */
+        int unitAt(long position) {
+            if (unit == 1) {
+                return byteAt(position) & 0xFF;
+            }
+            int first = byteAt(position) & 0xFF;
+            int second = byteAt(position + 1) & 0xFF;
+            return bigEndian ? first << 8 | second : second << 8 | first;
+        }
+
+        /**
+         * Hàng bắt đầu ở {@code start} kết thúc ở {@code '\n'} đầu tiên, hoặc sau
+         * {@link #MAX_ROW_BYTES} byte (lùi lại để không cắt giữa một ký tự UTF-8 hay một cặp
+         * surrogate UTF-16).
+         * @return offset ngay sau nội dung của hàng (không gồm {@code '\n'})
+         */
+        long rowEnd(long start) {
+            long limit = Math.min(size, start + MAX_ROW_BYTES);
+            for (long i = start; i < limit; i += unit) {
+                if (unitAt(i) == '\n') {
+                    return i;
+                }
+            }
+            if (unit == 2 && limit < size && limit - 2 > start && Character.isHighSurrogate((char) unitAt(limit - 2))) {
+                return limit - 2;
+            }
+            if (utf8 && limit < size) {
+                long end = limit;
+                while (end > start + 1 && end > limit - 3 && (byteAt(end) & 0xC0) == 0x80) {
+                    end--;
+                }
+                return end;
+            }
+            return limit;
+        }
+
+        long nextRowStart(long start, long end) {
+            return end < size && unitAt(end) == '\n' ? end + unit : end;
+        }
+
+        /** Offset của hàng {@code row}: nhảy tới checkpoint gần nhất rồi đi tiếp tối đa INDEX_STRIDE hàng. */
+        long rowStart(long row) {
+            long[] index = checkpoints;
+            long offset = index[(int) (row / INDEX_STRIDE)];
+            for (long r = row - row % INDEX_STRIDE; r < row && offset < size; r++) {
+                offset = nextRowStart(offset, rowEnd(offset));
+            }
+            return offset;
+        }
+
+        String decode(long start, long end, byte[] scratch) {
+            int length = (int) (end - start);
+            if (length >= unit && unitAt(end - unit) == '\r') {
+                length -= unit;
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = byteAt(start + i);
+            }
+            String row = new String(scratch, 0, length, charset);
+            return row.indexOf('\t') < 0 ? row : row.replace("\t", " ".repeat(TAB_WIDTH));
+        }
+
+        /** Lập chỉ mục toàn bộ file; báo tiến độ khoảng mỗi 32 MB. */
+        void index(java.util.function.Consumer<Text> progress) {
+            long offset = start;
+            long rows = 0;
+            long reported = 0;
+            int widest = 0;
+            while (offset < size && !cancelled) {
+                if (rows % INDEX_STRIDE == 0) {
+                    int slot = (int) (rows / INDEX_STRIDE);
+                    long[] index = checkpoints;
+                    if (slot == index.length) {
+                        index = Arrays.copyOf(index, index.length * 2);
+                    }
+                    index[slot] = offset;
+                    checkpoints = index;
+                }
+                long end = rowEnd(offset);
+                widest = (int) Math.max(widest, end - offset);
+                offset = nextRowStart(offset, end);
+                rows++;
+                if (offset - reported >= (32 << 20)) {
+                    maxRowBytes = widest;
+                    indexedBytes = offset;
+                    rowCount = rows;
+                    reported = offset;
+                    progress.accept(this);
+                }
+            }
+            maxRowBytes = widest;
+            indexedBytes = offset;
+            rowCount = rows;
+            indexed = !cancelled;
+            progress.accept(this);
+        }
+    }
+}
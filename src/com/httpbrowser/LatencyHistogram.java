@@ -0,0 +1,47 @@
+package com.httpbrowser;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency Histogram - histogram latency không khóa với các bucket cố định.
+ *
+ * Mỗi lần ghi chỉ là một phép tìm bucket và một {@code incrementAndGet} trên
+ * {@link AtomicLongArray}, nên nhiều handler có thể ghi đồng thời mà không chặn nhau.
+ */
+final class LatencyHistogram {
+    /** Cận trên của bucket, tính bằng micro giây (bucket cuối là +Inf). */
+    static final long[] BOUNDS_MICROS = {
+        100, 250, 500,
+        1_000, 2_500, 5_000,
+        10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+    private final LongAdder sumNanos = new LongAdder();
+
+    void record(long nanos) {
+        long micros = nanos / 1000;
+        int index = 0;
+        while (index < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        sumNanos.add(nanos);
+    }
+
+    /** Số mẫu trong bucket {@code index} (không cộng dồn). */
+    long bucket(int index) {
+        return buckets.get(index);
+    }
+
+    int bucketCount() {
+        return buckets.length();
+    }
+
+    double sumSeconds() {
+        return sumNanos.sum() / 1_000_000_000.0;
+    }
+}
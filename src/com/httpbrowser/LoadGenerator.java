@@ -0,0 +1,199 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load Generator - bộ tạo tải đơn giản cho các benchmark của WebServer.
+ * Mỗi worker là một platform thread gửi request liên tục trong một khoảng thời gian
+ * và ghi lại latency của từng request.
+ */
+final class LoadGenerator {
+
+    /** Một request của workload; ném exception nếu request thất bại. */
+    @FunctionalInterface
+    interface Request {
+        void execute() throws Exception;
+    }
+
+    /** Kết quả của một lần chạy tải. */
+    static final class Result {
+        final String label;
+        final long requests;
+        final long errors;
+        final double seconds;
+        final long[] latenciesNanos; // đã sắp xếp tăng dần
+
+        Result(String label, long errors, double seconds, long[] latenciesNanos) {
+            this.label = label;
+            this.requests = latenciesNanos.length;
+            this.errors = errors;
+            this.seconds = seconds;
+            this.latenciesNanos = latenciesNanos;
+        }
+
+        double throughput() {
+            return seconds > 0 ? requests / seconds : 0;
+        }
+
+        double percentileMillis(double p) {
+            if (latenciesNanos.length == 0) return 0;
+            int index = (int) Math.ceil(p / 100.0 * latenciesNanos.length) - 1;
+            index = Math.max(0, Math.min(latenciesNanos.length - 1, index));
+            return latenciesNanos[index] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %9.0f req/s  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  (%d ok, %d errors)",
+                label, throughput(), percentileMillis(50), percentileMillis(99),
+                percentileMillis(100), requests, errors);
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Chạy {@code concurrency} worker trong {@code durationMillis}, sau khi warm-up {@code warmupMillis}.
+     */
+    static Result run(String label, int concurrency, long warmupMillis, long durationMillis, Request request)
+            throws InterruptedException {
+        if (warmupMillis > 0) {
+            runPhase(concurrency, warmupMillis, request);
+        }
+        return runPhase(concurrency, durationMillis, request).toResult(label);
+    }
+
+    private static Phase runPhase(int concurrency, long durationMillis, Request request) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        Phase phase = new Phase(concurrency);
+        Thread[] workers = new Thread[concurrency];
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            final int id = i;
+            workers[i] = new Thread(() -> {
+                LongList latencies = phase.latencies[id];
+                while (!stop.get()) {
+                    long t0 = System.nanoTime();
+                    try {
+                        request.execute();
+                        latencies.add(System.nanoTime() - t0);
+                    } catch (Exception e) {
+                        phase.errors[id]++;
+                    }
+                }
+            }, "load-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        Thread.sleep(durationMillis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        phase.seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return phase;
+    }
+
+    /** GET và đọc hết body (để connection được trả về keep-alive cache). */
+    static void get(String url) throws IOException {
+        HttpURLConnection connection = open(url, "GET");
+        int code = connection.getResponseCode();
+        drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (code >= 400) {
+            throw new IOException("HTTP " + code);
+        }
+    }
+
+    /** POST body với tốc độ chậm: chia thành {@code chunks} phần, nghỉ {@code pauseMillis} giữa các phần. */
+    static void slowPost(String url, byte[] body, int chunks, long pauseMillis) throws Exception {
+        HttpURLConnection connection = open(url, "POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        try (OutputStream os = connection.getOutputStream()) {
+            int step = Math.max(1, body.length / chunks);
+            for (int off = 0; off < body.length; off += step) {
+                os.write(body, off, Math.min(step, body.length - off));
+                os.flush();
+                Thread.sleep(pauseMillis);
+            }
+        }
+        int code = connection.getResponseCode();
+        drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (code >= 400) {
+            throw new IOException("HTTP " + code);
+        }
+    }
+
+    static HttpURLConnection open(String url, String method) throws IOException {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URI(url).toURL().openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            return connection;
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+    }
+
+    static long drain(InputStream in) throws IOException {
+        if (in == null) return 0;
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream input = in) {
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    private static final class Phase {
+        final LongList[] latencies;
+        final long[] errors;
+        double seconds;
+
+        Phase(int concurrency) {
+            latencies = new LongList[concurrency];
+            errors = new long[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                latencies[i] = new LongList();
+            }
+        }
+
+        Result toResult(String label) {
+            int total = 0;
+            long errorCount = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                total += latencies[i].size;
+                errorCount += errors[i];
+            }
+            long[] all = new long[total];
+            int pos = 0;
+            for (LongList list : latencies) {
+                System.arraycopy(list.values, 0, all, pos, list.size);
+                pos += list.size;
+            }
+            Arrays.sort(all);
+            return new Result(label, errorCount, seconds, all);
+        }
+    }
+
+    private static final class LongList {
+        long[] values = new long[4096];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
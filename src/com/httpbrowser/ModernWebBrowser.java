@@ -198,11 +198,11 @@ public class ModernWebBrowser extends JPanel {
         statusLabel.setText("⏳ Loading: " + url);
         goButton.setEnabled(false);
         
-        SwingWorker<String, Void> worker = new SwingWorker<>() {
+        SwingWorker<HttpTransport.Response, Void> worker = new SwingWorker<>() {
             private long startTime;
             
             @Override
-            protected String doInBackground() throws Exception {
+            protected HttpTransport.Response doInBackground() throws Exception {
                 startTime = System.currentTimeMillis();
                 return fetchPage(url);
             }
@@ -210,7 +210,8 @@ public class ModernWebBrowser extends JPanel {
             @Override
             protected void done() {
                 try {
-                    String html = get();
+                    HttpTransport.Response response = get();
+                    String html = response.text();
                     long loadTime = System.currentTimeMillis() - startTime;
                     
                     // Show in all tabs
@@ -230,8 +231,12 @@ public class ModernWebBrowser extends JPanel {
                         contentTabs.setSelectedIndex(2); // Source tab
                     }
                     
-                    statusLabel.setText(String.format("✅ Done - %dms - %d KB", 
-                                      loadTime, html.length() / 1024));
+                    String compression = response.compressionSummary();
+                    statusLabel.setText(String.format("✅ Done - %dms - %d KB%s%s", 
+                                      loadTime, html.length() / 1024,
+                                      response.cacheStatus == HttpCache.Status.HIT
+                                          || response.cacheStatus == HttpCache.Status.REVALIDATED ? " - 💾 cache" : "",
+                                      compression != null ? " - 🗜 " + compression : ""));
                     
                 } catch (Exception e) {
                     String error = createErrorPage(url, e);
@@ -281,46 +286,14 @@ public class ModernWebBrowser extends JPanel {
         }
     }
     
-    private String fetchPage(String urlString) throws Exception {
-        URI uri = new URI(urlString);
-        URL url = uri.toURL();
-        
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("User-Agent", 
-            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-        connection.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
-        connection.setRequestProperty("Accept-Language", "vi-VN,vi;q=0.9,en-US;q=0.8,en;q=0.7");
-        connection.setConnectTimeout(20000);
-        connection.setReadTimeout(20000);
-        connection.setInstanceFollowRedirects(true);
-        
-        // Handle HTTPS
-        if (connection instanceof javax.net.ssl.HttpsURLConnection) {
-            javax.net.ssl.HttpsURLConnection https = (javax.net.ssl.HttpsURLConnection) connection;
-            https.setHostnameVerifier((hostname, session) -> true);
-        }
-        
-        int code = connection.getResponseCode();
+    private HttpTransport.Response fetchPage(String urlString) throws Exception {
+        HttpTransport.Response response = HttpTransport.shared().get(urlString,
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        int code = response.statusCode;
         if (code != 200) {
-            throw new IOException("HTTP " + code + ": " + connection.getResponseMessage());
-        }
-        
-        InputStream in = connection.getInputStream();
-        if ("gzip".equals(connection.getContentEncoding())) {
-            in = new java.util.zip.GZIPInputStream(in);
+            throw new IOException("HTTP " + code + ": " + HttpTransport.reasonPhrase(code));
         }
-        
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
-        
-        connection.disconnect();
-        return content.toString();
+        return response;
     }
     
     private String extractReaderContent(String html, String url) {
@@ -0,0 +1,1436 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import com.sun.net.httpserver.Authenticator;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * NIO Http Server - engine HTTP/1.1 thay thế cho server có sẵn của JDK, dùng cùng API
+ * {@link HttpServer}/{@link HttpHandler}/{@link Filter} nên WebServer đăng ký handler y hệt.
+ *
+ * Mỗi connection chạy trên một virtual thread với {@link SocketChannel} blocking; đọc/ghi
+ * qua hai direct buffer lấy từ {@link BufferPool}. Request line và header được parse thẳng
+ * trên byte (method, version và tên header thường gặp dùng lại String hằng). Các request
+ * pipelined đã nằm sẵn trong buffer được xử lý lần lượt và response của chúng được gom
+ * lại, chỉ flush khi không còn request nào đang chờ.
+ *
+ * Nếu có executor ({@link #setExecutor}), handler chạy trên executor đó và virtual thread
+ * của connection chờ kết quả; nếu không, handler chạy ngay trên virtual thread của connection.
+ */
+final class NioHttpServer extends HttpServer {
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    private static final long IDLE_TIMEOUT_MILLIS = 30_000;
+    private static final long DRAIN_LIMIT = 64 * 1024;
+
+    private final BufferPool buffers = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final List<Context> contexts = new CopyOnWriteArrayList<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel listener;
+    private InetSocketAddress address;
+    private volatile Executor executor;
+    private Thread acceptor;
+    private ScheduledExecutorService reaper;
+    private volatile boolean running;
+
+    private NioHttpServer() {
+    }
+
+    /** Tạo server đã bind (giống {@link HttpServer#create(InetSocketAddress, int)}). */
+    static NioHttpServer open(InetSocketAddress address, int backlog) throws IOException {
+        NioHttpServer server = new NioHttpServer();
+        server.bind(address, backlog);
+        return server;
+    }
+
+    @Override
+    public void bind(InetSocketAddress addr, int backlog) throws IOException {
+        if (listener != null) {
+            throw new BindException("HttpServer already bound");
+        }
+        listener = ServerSocketChannel.open();
+        listener.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        listener.bind(addr, backlog);
+        address = (InetSocketAddress) listener.getLocalAddress();
+    }
+
+    @Override
+    public void start() {
+        if (listener == null) {
+            throw new IllegalStateException("server not bound");
+        }
+        if (running || acceptor != null) {
+            throw new IllegalStateException("server already started");
+        }
+        running = true;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "nio-http-idle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::closeIdleConnections, 1, 1, TimeUnit.SECONDS);
+        acceptor = new Thread(this::acceptLoop, "nio-http-acceptor");
+        acceptor.start();
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+        if (acceptor != null) {
+            throw new IllegalStateException("server already started");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Ngừng nhận connection mới, chờ tối đa {@code delay} giây cho các exchange đang chạy
+     * (kể cả request mới trên connection keep-alive còn mở), rồi đóng mọi connection.
+     */
+    @Override
+    public void stop(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("negative delay parameter");
+        }
+        running = false;
+        try {
+            listener.close();
+        } catch (IOException e) {
+            // bỏ qua
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay);
+        while (System.nanoTime() < deadline && connections.stream().anyMatch(c -> c.busy || c.receiving)) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (acceptor != null) {
+            try {
+                acceptor.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("Illegal value for path or protocol");
+        }
+        for (Context context : contexts) {
+            if (context.path.equals(path)) {
+                throw new IllegalArgumentException("cannot add context to list");
+            }
+        }
+        Context context = new Context(path, handler);
+        contexts.add(context);
+        return context;
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+        return createContext(path, null);
+    }
+
+    @Override
+    public void removeContext(String path) {
+        for (Context context : contexts) {
+            if (context.path.equals(path)) {
+                contexts.remove(context);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("cannot remove element from list");
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+        if (!contexts.remove(context)) {
+            throw new IllegalArgumentException("cannot remove element from list");
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /** Số direct buffer đã cấp phát mới và số lần dùng lại từ pool. */
+    long[] bufferStats() {
+        return new long[] {buffers.allocated(), buffers.reused()};
+    }
+
+    /** Context khớp tiền tố dài nhất (cùng quy tắc với server của JDK). */
+    private Context findContext(String path) {
+        Context best = null;
+        for (Context context : contexts) {
+            if (path.startsWith(context.path) && (best == null || context.path.length() > best.path.length())) {
+                best = context;
+            }
+        }
+        return best;
+    }
+
+    private void acceptLoop() {
+        Thread.Builder threads = Thread.ofVirtual().name("nio-http-conn-", 0);
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = listener.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+                System.err.println("⚠️ Accept lỗi: " + e.getMessage());
+                continue;
+            }
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                // không quan trọng
+            }
+            Connection connection = new Connection(channel);
+            connections.add(connection);
+            threads.start(connection);
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Connection connection : connections) {
+            if (!connection.busy && now - connection.lastActivity > IDLE_TIMEOUT_MILLIS) {
+                connection.close();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ context
+
+    private final class Context extends HttpContext {
+        private final String path;
+        private volatile HttpHandler handler;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final List<Filter> filters = new CopyOnWriteArrayList<>();
+        private volatile Authenticator authenticator;
+
+        Context(String path, HttpHandler handler) {
+            this.path = path;
+            this.handler = handler;
+        }
+
+        @Override
+        public HttpHandler getHandler() {
+            return handler;
+        }
+
+        @Override
+        public void setHandler(HttpHandler handler) {
+            if (handler == null) {
+                throw new NullPointerException("Null handler parameter");
+            }
+            if (this.handler != null) {
+                throw new IllegalArgumentException("handler already set");
+            }
+            this.handler = handler;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public HttpServer getServer() {
+            return NioHttpServer.this;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public List<Filter> getFilters() {
+            return filters;
+        }
+
+        @Override
+        public Authenticator setAuthenticator(Authenticator authenticator) {
+            Authenticator previous = this.authenticator;
+            this.authenticator = authenticator;
+            return previous;
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+    }
+
+    // ------------------------------------------------------------------ parsing
+
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE"};
+    private static final byte[][] METHOD_BYTES = ascii(METHODS, false);
+
+    // Tên header thường gặp, đã ở dạng chuẩn hóa của Headers (chữ đầu hoa, còn lại thường)
+    private static final String[] KNOWN_HEADERS = {
+        "Host", "User-agent", "Accept", "Accept-encoding", "Accept-language", "Connection",
+        "Content-length", "Content-type", "Transfer-encoding", "Expect", "Cookie", "Cache-control",
+        "If-none-match", "If-modified-since", "Range", "If-range", "Pragma", "Referer", "Origin",
+        "Upgrade-insecure-requests", "Sec-fetch-mode", "Sec-fetch-site", "Sec-fetch-dest", "Authorization"
+    };
+    private static final byte[][] KNOWN_HEADER_BYTES = ascii(KNOWN_HEADERS, true);
+
+    private static byte[][] ascii(String[] values, boolean lowerCase) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            String value = lowerCase ? values[i].toLowerCase(Locale.ROOT) : values[i];
+            bytes[i] = value.getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+
+    /**
+     * Tìm chuỗi hằng khớp với b[from, to); -1 nếu không có.
+     * @param ignoreCase so khớp không phân biệt hoa thường (bảng phải ở dạng chữ thường)
+     */
+    private static int lookup(byte[][] table, byte[] b, int from, int to, boolean ignoreCase) {
+        int length = to - from;
+        outer:
+        for (int i = 0; i < table.length; i++) {
+            byte[] candidate = table[i];
+            if (candidate.length != length) {
+                continue;
+            }
+            for (int j = 0; j < length; j++) {
+                int c = b[from + j];
+                if (ignoreCase && c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != candidate[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String headerName(byte[] b, int from, int to) {
+        int known = lookup(KNOWN_HEADER_BYTES, b, from, to, true);
+        if (known >= 0) {
+            return KNOWN_HEADERS[known];
+        }
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) {
+            char c = (char) (b[from + i] & 0xff);
+            if (i == 0 && c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            } else if (i > 0 && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+    private static boolean isToken(String value, String token) {
+        for (String part : value.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Lỗi cú pháp request; connection trả về status tương ứng rồi đóng. */
+    private static final class BadRequest extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // ------------------------------------------------------------------ response helpers
+
+    private static final DateTimeFormatter HTTP_DATE =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    private static volatile long dateSecond;
+    private static volatile String dateValue = "";
+
+    /** Header Date chỉ format lại mỗi giây một lần. */
+    private static String currentDate() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != dateSecond) {
+            dateValue = HTTP_DATE.format(Instant.ofEpochSecond(second));
+            dateSecond = second;
+        }
+        return dateValue;
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 411: return "Length Required";
+            case 412: return "Precondition Failed";
+            case 413: return "Request Entity Too Large";
+            case 416: return "Requested Range Not Satisfiable";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            case 505: return "HTTP Version Not Supported";
+            default: return "";
+        }
+    }
+
+    // ------------------------------------------------------------------ connection
+
+    private final class Connection implements Runnable {
+        private final SocketChannel channel;
+        private ByteBuffer in;   // chế độ đọc: [position, limit) là byte chưa xử lý
+        private ByteBuffer out;  // chế độ ghi: [0, position) là byte chờ gửi
+        private final byte[] head = new byte[BUFFER_SIZE];
+        private final byte[] chunk = new byte[8 * 1024];
+        private int scanFrom;
+        private volatile boolean busy;
+        private volatile boolean receiving; // đã nhận một phần header, stop() chờ request này
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            in = buffers.acquire();
+            in.flip(); // rỗng, chế độ đọc
+            out = buffers.acquire();
+            try {
+                // Không dừng theo running: request đến trên connection đang mở trong lúc stop
+                // vẫn được phục vụ, stop() đóng connection khi hết exchange hoặc hết hạn
+                while (!closed) {
+                    int end = findHeadEnd();
+                    if (end < 0) {
+                        if (in.remaining() >= in.capacity()) {
+                            throw new BadRequest(431, "Request header fields too large");
+                        }
+                        if (fill() < 0) {
+                            break;
+                        }
+                        receiving = in.hasRemaining();
+                        continue;
+                    }
+                    busy = true;
+                    receiving = false;
+                    Exchange exchange;
+                    try {
+                        exchange = parse(end);
+                    } catch (BadRequest e) {
+                        busy = false;
+                        throw e;
+                    }
+                    boolean keepAlive = serve(exchange);
+                    busy = false;
+                    if (!keepAlive) {
+                        break;
+                    }
+                }
+            } catch (BadRequest e) {
+                sendError(e.status, e.getMessage());
+            } catch (IOException e) {
+                // client ngắt kết nối, hết thời gian chờ hoặc server dừng
+            } finally {
+                close();
+                connections.remove(this);
+                ByteBuffer input = in;
+                ByteBuffer output = out;
+                in = null;
+                out = null;
+                buffers.release(input);
+                buffers.release(output);
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                channel.close(); // làm read/write đang chặn trên channel thoát ra
+            } catch (IOException e) {
+                // bỏ qua
+            }
+        }
+
+        /** Đọc thêm từ socket vào {@code in}; -1 khi client đã đóng. */
+        int fill() throws IOException {
+            int consumed = in.position();
+            in.compact();
+            int n = channel.read(in);
+            in.flip();
+            scanFrom = Math.max(0, scanFrom - consumed);
+            if (n > 0) {
+                lastActivity = System.currentTimeMillis();
+            }
+            return n;
+        }
+
+        /** Vị trí ngay sau dòng trống kết thúc phần header, hoặc -1 nếu chưa đủ. */
+        private int findHeadEnd() {
+            int start = in.position();
+            // bỏ qua CRLF thừa giữa các request (RFC 9112 2.2)
+            while (start < in.limit() && (in.get(start) == '\r' || in.get(start) == '\n')) {
+                start++;
+            }
+            in.position(start);
+            int limit = in.limit();
+            for (int i = Math.max(start, scanFrom); i < limit; i++) {
+                if (in.get(i) != '\n') {
+                    continue;
+                }
+                if (i + 1 < limit && in.get(i + 1) == '\n') {
+                    scanFrom = 0;
+                    return i + 2;
+                }
+                if (i + 2 < limit && in.get(i + 1) == '\r' && in.get(i + 2) == '\n') {
+                    scanFrom = 0;
+                    return i + 3;
+                }
+            }
+            scanFrom = Math.max(start, limit - 2);
+            return -1;
+        }
+
+        /** Parse request line và header trong [position, end) của {@code in}. */
+        private Exchange parse(int end) throws IOException {
+            int length = end - in.position();
+            in.get(in.position(), head, 0, length);
+            in.position(end);
+
+            int lineEnd = lineEnd(head, 0, length);
+            int sp1 = indexOf(head, ' ', 0, lineEnd);
+            int sp2 = sp1 < 0 ? -1 : indexOf(head, ' ', sp1 + 1, lineEnd);
+            if (sp1 <= 0 || sp2 < 0 || sp2 == sp1 + 1) {
+                throw new BadRequest(400, "Bad request line");
+            }
+            int method = lookup(METHOD_BYTES, head, 0, sp1, false);
+            String methodName = method >= 0 ? METHODS[method]
+                : new String(head, 0, sp1, StandardCharsets.ISO_8859_1);
+            String target = new String(head, sp1 + 1, sp2 - sp1 - 1, StandardCharsets.ISO_8859_1);
+            URI uri;
+            try {
+                uri = new URI(target);
+            } catch (URISyntaxException e) {
+                throw new BadRequest(400, "Bad request target");
+            }
+            String protocol;
+            int versionLength = trimEnd(head, sp2 + 1, lineEnd) - sp2 - 1;
+            if (versionLength == 8 && startsWith(head, sp2 + 1, "HTTP/1.1")) {
+                protocol = "HTTP/1.1";
+            } else if (versionLength == 8 && startsWith(head, sp2 + 1, "HTTP/1.0")) {
+                protocol = "HTTP/1.0";
+            } else if (versionLength > 5 && startsWith(head, sp2 + 1, "HTTP/")) {
+                throw new BadRequest(505, "HTTP version not supported");
+            } else {
+                throw new BadRequest(400, "Bad request line");
+            }
+
+            Exchange exchange = new Exchange(this, methodName, target, uri, protocol);
+            Headers headers = exchange.requestHeaders;
+            int pos = lineEnd + 1;
+            while (pos < length) {
+                int eol = lineEnd(head, pos, length);
+                int stop = trimEnd(head, pos, eol);
+                if (stop == pos) {
+                    break; // dòng trống: hết header
+                }
+                int colon = indexOf(head, ':', pos, stop);
+                if (colon <= pos || head[colon - 1] == ' ' || head[pos] == ' ' || head[pos] == '\t') {
+                    throw new BadRequest(400, "Bad header line");
+                }
+                int valueStart = colon + 1;
+                while (valueStart < stop && (head[valueStart] == ' ' || head[valueStart] == '\t')) {
+                    valueStart++;
+                }
+                String name = headerName(head, pos, colon);
+                String value = new String(head, valueStart, stop - valueStart, StandardCharsets.ISO_8859_1);
+                headers.add(name, value);
+                exchange.onHeader(name, value);
+                pos = eol + 1;
+            }
+            exchange.prepareBody();
+            return exchange;
+        }
+
+        /**
+         * Chạy filter + handler cho một exchange.
+         * @return true nếu connection còn dùng được cho request tiếp theo
+         */
+        private boolean serve(Exchange exchange) throws IOException {
+            Context context = findContext(exchange.rawPath());
+            if (context == null || context.handler == null) {
+                exchange.respondDirect(404, "No context found for request");
+                return exchange.finish();
+            }
+            exchange.context = context;
+            try {
+                Authenticator authenticator = context.authenticator;
+                if (authenticator != null && !exchange.authenticate(authenticator)) {
+                    return exchange.finish();
+                }
+                Filter.Chain chain = new Filter.Chain(context.filters, context.handler);
+                Executor handlerExecutor = executor;
+                if (handlerExecutor == null) {
+                    chain.doFilter(exchange);
+                } else {
+                    runOn(handlerExecutor, chain, exchange);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!exchange.headersSent && !closed) {
+                    System.err.println("⚠️ Handler lỗi (" + exchange.method + " " + exchange.target + "): " + e);
+                    exchange.closeAfter = true;
+                    exchange.respondDirect(500, "Internal Server Error");
+                } else {
+                    exchange.closeAfter = true;
+                }
+            }
+            return exchange.finish();
+        }
+
+        private void runOn(Executor handlerExecutor, Filter.Chain chain, Exchange exchange) throws IOException {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                chain.doFilter(exchange);
+                return null;
+            });
+            try {
+                handlerExecutor.execute(task);
+                task.get();
+            } catch (RejectedExecutionException e) {
+                exchange.closeAfter = true;
+                exchange.respondDirect(503, "Service Unavailable");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for handler");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private void sendError(int status, String message) {
+            try {
+                byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+                writeAscii("HTTP/1.1 " + status + " " + reason(status) + "\r\n");
+                writeAscii("Date: " + currentDate() + "\r\nConnection: close\r\n");
+                writeAscii("Content-Type: text/plain; charset=UTF-8\r\nContent-Length: " + body.length + "\r\n\r\n");
+                write(body, 0, body.length);
+                flush();
+            } catch (IOException e) {
+                // client đã đi
+            }
+        }
+
+        // ---- ghi
+
+        void writeAscii(String s) throws IOException {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                if (!out.hasRemaining()) {
+                    flush();
+                }
+                out.put((byte) s.charAt(i));
+            }
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            if (len > out.remaining()) {
+                flush();
+                if (len >= out.capacity()) {
+                    writeFully(ByteBuffer.wrap(b, off, len));
+                    return;
+                }
+            }
+            out.put(b, off, len);
+        }
+
+        void flush() throws IOException {
+            if (out.position() == 0) {
+                return;
+            }
+            out.flip();
+            writeFully(out);
+            out.clear();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /** Còn request pipelined đã nằm trong buffer (để hoãn flush). */
+        boolean hasPipelinedRequest() {
+            return in.hasRemaining();
+        }
+
+        InetSocketAddress remoteAddress() {
+            try {
+                return (InetSocketAddress) channel.getRemoteAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        InetSocketAddress localAddress() {
+            try {
+                return (InetSocketAddress) channel.getLocalAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private static int lineEnd(byte[] b, int from, int to) {
+        int i = indexOf(b, '\n', from, to);
+        return i < 0 ? to : i;
+    }
+
+    private static int trimEnd(byte[] b, int from, int to) {
+        while (to > from && (b[to - 1] == '\r' || b[to - 1] == ' ' || b[to - 1] == '\t')) {
+            to--;
+        }
+        return to;
+    }
+
+    private static int indexOf(byte[] b, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] b, int from, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b[from + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------ exchange
+
+    private static final class Exchange extends HttpExchange {
+        private final Connection connection;
+        private final String method;
+        private final String target;
+        private final String protocol;
+        final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private Context context;
+        private final URI uri;
+        private Map<String, Object> attributes;
+        private HttpPrincipal principal;
+
+        private long contentLength = -1;
+        private boolean chunkedRequest;
+        private boolean expectContinue;
+        boolean closeAfter;
+
+        private InputStream requestBody;
+        private OutputStream responseBody;
+        private final ResponseStream placeholder = new ResponseStream();
+        private InputStream userIn;
+        private OutputStream userOut;
+        boolean headersSent;
+        private int responseCode = -1;
+        private boolean finished;
+
+        Exchange(Connection connection, String method, String target, URI uri, String protocol) {
+            this.connection = connection;
+            this.method = method;
+            this.target = target;
+            this.uri = uri;
+            this.protocol = protocol;
+            this.closeAfter = "HTTP/1.0".equals(protocol); // 1.0 chỉ giữ kết nối khi có keep-alive
+        }
+
+        void onHeader(String name, String value) throws BadRequest {
+            switch (name) {
+                case "Content-length":
+                    try {
+                        long length = Long.parseLong(value.trim());
+                        if (length < 0 || (contentLength >= 0 && contentLength != length)) {
+                            throw new NumberFormatException(value);
+                        }
+                        contentLength = length;
+                    } catch (NumberFormatException e) {
+                        throw new BadRequest(400, "Bad Content-Length");
+                    }
+                    break;
+                case "Transfer-encoding":
+                    if (isToken(value, "chunked")) {
+                        chunkedRequest = true;
+                    } else {
+                        throw new BadRequest(501, "Unsupported Transfer-Encoding");
+                    }
+                    break;
+                case "Connection":
+                    if (isToken(value, "close")) {
+                        closeAfter = true;
+                    } else if (isToken(value, "keep-alive")) {
+                        closeAfter = false;
+                    }
+                    break;
+                case "Expect":
+                    expectContinue = "100-continue".equalsIgnoreCase(value.trim());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void prepareBody() throws BadRequest {
+            if (chunkedRequest) {
+                if (contentLength >= 0) {
+                    throw new BadRequest(400, "Both Content-Length and Transfer-Encoding");
+                }
+                requestBody = new ChunkedInput();
+            } else {
+                requestBody = new FixedInput(Math.max(0, contentLength));
+            }
+        }
+
+        String rawPath() {
+            int end = target.length();
+            int query = target.indexOf('?');
+            if (query >= 0) {
+                end = query;
+            }
+            if (target.startsWith("/")) {
+                return target.substring(0, end);
+            }
+            return uri.getPath() != null ? uri.getPath() : "/"; // absolute-form
+        }
+
+        boolean authenticate(Authenticator authenticator) throws IOException {
+            Authenticator.Result result = authenticator.authenticate(this);
+            if (result instanceof Authenticator.Success) {
+                principal = ((Authenticator.Success) result).getPrincipal();
+                return true;
+            }
+            int code = result instanceof Authenticator.Failure
+                ? ((Authenticator.Failure) result).getResponseCode()
+                : ((Authenticator.Retry) result).getResponseCode();
+            sendResponseHeaders(code, -1);
+            return false;
+        }
+
+        /** Gửi response đơn giản khi handler không chạy được. */
+        void respondDirect(int status, String message) throws IOException {
+            byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            responseHeaders.set("Content-Type", "text/plain; charset=UTF-8");
+            sendResponseHeaders(status, body.length);
+            responseBody.write(body);
+        }
+
+        // ---- HttpExchange
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return context;
+        }
+
+        @Override
+        public void close() {
+            try {
+                finish();
+            } catch (IOException e) {
+                closeAfter = true;
+            }
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return userIn != null ? userIn : requestBody;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return userOut != null ? userOut : placeholder;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (headersSent) {
+                throw new IOException("headers already sent");
+            }
+            responseCode = rCode;
+            boolean noBody = false;
+            boolean noLengthHeader = false;
+            if ((rCode >= 100 && rCode < 200) || rCode == 204 || rCode == 304) {
+                responseLength = -1;
+                noLengthHeader = rCode != 304;
+            }
+            boolean head = "HEAD".equals(method);
+            if (head || rCode == 304) {
+                // HEAD/304: handler tự đặt Content-Length nếu cần, không có body
+                responseBody = new FixedOutput(0);
+                noBody = true;
+            } else if (responseLength == 0) {
+                if ("HTTP/1.0".equals(protocol)) {
+                    closeAfter = true;
+                    responseBody = new UntilCloseOutput();
+                } else {
+                    responseHeaders.set("Transfer-Encoding", "chunked");
+                    responseBody = new ChunkedOutput();
+                }
+            } else {
+                if (responseLength < 0) {
+                    noBody = true;
+                    responseLength = 0;
+                }
+                if (!noLengthHeader) {
+                    responseHeaders.set("Content-Length", Long.toString(responseLength));
+                }
+                responseBody = new FixedOutput(responseLength);
+            }
+            List<String> connectionHeader = responseHeaders.get("Connection");
+            if (connectionHeader != null) {
+                for (String value : connectionHeader) {
+                    if (isToken(value, "close")) {
+                        closeAfter = true;
+                    }
+                }
+            }
+            if (closeAfter) {
+                responseHeaders.set("Connection", "close");
+            } else if ("HTTP/1.0".equals(protocol)) {
+                responseHeaders.set("Connection", "keep-alive");
+            }
+            responseHeaders.set("Date", currentDate());
+
+            connection.writeAscii("HTTP/1.1 ");
+            connection.writeAscii(Integer.toString(rCode));
+            connection.writeAscii(" ");
+            connection.writeAscii(reason(rCode));
+            connection.writeAscii("\r\n");
+            for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+                for (String value : header.getValue()) {
+                    connection.writeAscii(header.getKey());
+                    connection.writeAscii(": ");
+                    connection.writeAscii(value == null ? "" : value);
+                    connection.writeAscii("\r\n");
+                }
+            }
+            connection.writeAscii("\r\n");
+            headersSent = true;
+            expectContinue = false; // đã trả lời, không cần 100 Continue nữa
+            if (noBody) {
+                close();
+            }
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return connection.remoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return connection.localAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return protocol;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            Object value = attributes != null ? attributes.get(name) : null;
+            return value != null ? value : context != null ? context.attributes.get(name) : null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            if (attributes == null) {
+                attributes = new HashMap<>();
+            }
+            if (value == null) {
+                attributes.remove(name);
+            } else {
+                attributes.put(name, value);
+            }
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            if (i != null) {
+                userIn = i;
+            }
+            if (o != null) {
+                userOut = o;
+            }
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return principal;
+        }
+
+        /**
+         * Kết thúc exchange: đóng body response, đọc bỏ phần body request còn lại, flush
+         * (trừ khi request pipelined kế tiếp đã có trong buffer).
+         * @return true nếu connection dùng tiếp được
+         */
+        boolean finish() throws IOException {
+            if (finished) {
+                return !closeAfter;
+            }
+            finished = true;
+            if (!headersSent) {
+                closeAfter = true; // handler không trả lời: đóng kết nối giống server của JDK
+                connection.flush();
+                return false;
+            }
+            try {
+                ((BodyOutput) responseBody).finish();
+            } catch (IOException e) {
+                closeAfter = true;
+                throw e;
+            }
+            if (!closeAfter && !((BodyInput) requestBody).drain(DRAIN_LIMIT)) {
+                closeAfter = true; // body còn quá nhiều, đóng thay vì đọc bỏ
+            }
+            if (closeAfter || !connection.hasPipelinedRequest() || connection.out.position() > BUFFER_SIZE / 2) {
+                connection.flush();
+            }
+            return !closeAfter;
+        }
+
+        // ---- body request
+
+        private abstract class BodyInput extends InputStream {
+            private final byte[] one = new byte[1];
+            boolean eof;
+
+            /** Đọc bỏ phần còn lại (tối đa {@code limit} byte); false nếu còn dư. */
+            boolean drain(long limit) throws IOException {
+                byte[] skip = connection.chunk;
+                long total = 0;
+                while (!eof && total <= limit) {
+                    int n = read(skip, 0, skip.length);
+                    if (n < 0) {
+                        break;
+                    }
+                    total += n;
+                }
+                return eof;
+            }
+
+            void sendContinue() throws IOException {
+                if (expectContinue && !headersSent) {
+                    expectContinue = false;
+                    connection.writeAscii("HTTP/1.1 100 Continue\r\n\r\n");
+                    connection.flush();
+                }
+            }
+
+            /** Đọc từ buffer của connection (đọc thêm từ socket nếu cần), tối đa len byte. */
+            int readRaw(byte[] b, int off, int len) throws IOException {
+                ByteBuffer in = connection.in;
+                if (!in.hasRemaining() && connection.fill() < 0) {
+                    return -1;
+                }
+                int n = Math.min(len, in.remaining());
+                in.get(b, off, n);
+                return n;
+            }
+
+            int readRawByte() throws IOException {
+                ByteBuffer in = connection.in;
+                if (!in.hasRemaining() && connection.fill() < 0) {
+                    return -1;
+                }
+                return in.get() & 0xff;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int n = read(one, 0, 1);
+                return n < 0 ? -1 : one[0] & 0xff;
+            }
+        }
+
+        private final class FixedInput extends BodyInput {
+            private long remaining;
+
+            FixedInput(long length) {
+                this.remaining = length;
+                this.eof = length == 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (remaining == 0) {
+                    eof = true;
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                sendContinue();
+                int n = readRaw(b, off, (int) Math.min(len, remaining));
+                if (n < 0) {
+                    throw new EOFException("connection closed before end of request body");
+                }
+                remaining -= n;
+                if (remaining == 0) {
+                    eof = true;
+                }
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(remaining, connection.in.remaining());
+            }
+        }
+
+        private final class ChunkedInput extends BodyInput {
+            private long chunkRemaining;
+            private boolean needSize = true;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (eof) {
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                sendContinue();
+                if (needSize) {
+                    chunkRemaining = readChunkSize();
+                    needSize = false;
+                    if (chunkRemaining == 0) {
+                        skipTrailers();
+                        eof = true;
+                        return -1;
+                    }
+                }
+                int n = readRaw(b, off, (int) Math.min(len, chunkRemaining));
+                if (n < 0) {
+                    throw new EOFException("connection closed inside a chunk");
+                }
+                chunkRemaining -= n;
+                if (chunkRemaining == 0) {
+                    expectCrlf();
+                    needSize = true;
+                }
+                return n;
+            }
+
+            private long readChunkSize() throws IOException {
+                long size = 0;
+                int digits = 0;
+                int c;
+                while ((c = readRawByte()) >= 0) {
+                    int digit = Character.digit(c, 16);
+                    if (digit < 0) {
+                        break;
+                    }
+                    if (++digits > 15) {
+                        throw new IOException("chunk size too large");
+                    }
+                    size = size * 16 + digit;
+                }
+                if (digits == 0) {
+                    throw new IOException("bad chunk size");
+                }
+                while (c >= 0 && c != '\n') { // bỏ qua chunk extension
+                    c = readRawByte();
+                }
+                if (c < 0) {
+                    throw new EOFException("connection closed in chunk header");
+                }
+                return size;
+            }
+
+            private void expectCrlf() throws IOException {
+                int c = readRawByte();
+                if (c == '\r') {
+                    c = readRawByte();
+                }
+                if (c != '\n') {
+                    throw new IOException("missing CRLF after chunk");
+                }
+            }
+
+            private void skipTrailers() throws IOException {
+                int lineLength = 0;
+                int c;
+                while ((c = readRawByte()) >= 0) {
+                    if (c == '\n') {
+                        if (lineLength == 0) {
+                            return;
+                        }
+                        lineLength = 0;
+                    } else if (c != '\r') {
+                        lineLength++;
+                    }
+                }
+                throw new EOFException("connection closed in chunk trailer");
+            }
+        }
+
+        // ---- body response
+
+        /** OutputStream trả cho handler trước cả khi sendResponseHeaders (giống server của JDK). */
+        private final class ResponseStream extends OutputStream {
+            private OutputStream target() throws IOException {
+                if (responseBody == null) {
+                    throw new IOException("response headers not sent yet");
+                }
+                return responseBody;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                target().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                target().write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                target().flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!headersSent) {
+                    closeAfter = true;
+                }
+                if (!finished) {
+                    finish();
+                }
+            }
+        }
+
+        private abstract class BodyOutput extends OutputStream {
+            boolean done;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (done) {
+                    throw new IOException("stream closed");
+                }
+                connection.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                Exchange.this.close();
+            }
+
+            void checkOpen() throws IOException {
+                if (done) {
+                    throw new IOException("stream closed");
+                }
+            }
+
+            /** Ghi phần kết thúc của body (nếu có). */
+            abstract void finish() throws IOException;
+        }
+
+        private final class FixedOutput extends BodyOutput {
+            private long remaining;
+
+            FixedOutput(long length) {
+                this.remaining = length;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                checkOpen();
+                if (len > remaining) {
+                    closeAfter = true;
+                    throw new IOException("too many bytes to write to stream");
+                }
+                connection.write(b, off, len);
+                remaining -= len;
+            }
+
+            @Override
+            void finish() throws IOException {
+                if (done) {
+                    return;
+                }
+                done = true;
+                if (remaining > 0) {
+                    closeAfter = true;
+                    throw new IOException("insufficient bytes written to stream");
+                }
+            }
+        }
+
+        private final class ChunkedOutput extends BodyOutput {
+            private final byte[] buffer = connection.chunk;
+            private int count;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                checkOpen();
+                while (len > 0) {
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    if (count == buffer.length) {
+                        writeChunk();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                checkOpen();
+                writeChunk();
+                connection.flush();
+            }
+
+            private void writeChunk() throws IOException {
+                if (count == 0) {
+                    return;
+                }
+                connection.writeAscii(Integer.toHexString(count));
+                connection.writeAscii("\r\n");
+                connection.write(buffer, 0, count);
+                connection.writeAscii("\r\n");
+                count = 0;
+            }
+
+            @Override
+            void finish() throws IOException {
+                if (done) {
+                    return;
+                }
+                writeChunk();
+                connection.writeAscii("0\r\n\r\n");
+                done = true;
+            }
+        }
+
+        /** HTTP/1.0 không có chunked: body kết thúc khi đóng kết nối. */
+        private final class UntilCloseOutput extends BodyOutput {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                checkOpen();
+                connection.write(b, off, len);
+            }
+
+            @Override
+            void finish() {
+                done = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Response Template - trang HTML được biên dịch trước thành các đoạn byte UTF-8.
+ *
+ * Các đoạn tĩnh chỉ được encode một lần khi build. Các fragment động (ví dụ đồng hồ)
+ * được render lại khi phiên bản của chúng thay đổi, và kết quả được giữ trong một
+ * {@link Snapshot} bất biến. Mỗi request chỉ cần ghi lần lượt các mảng byte có sẵn.
+ */
+final class ResponseTemplate {
+
+    /** Phần động của template. */
+    interface Fragment {
+        /** Phiên bản tại thời điểm {@code epochMillis}; fragment chỉ render lại khi giá trị này đổi. */
+        long versionAt(long epochMillis);
+
+        String render(long epochMillis);
+    }
+
+    /**
+     * Một lần render của template: danh sách các đoạn byte, tổng độ dài và các validator
+     * (ETag, Last-Modified) được tính một lần cho cả snapshot. Biến thể nén (gzip/deflate)
+     * được tạo khi cần lần đầu và giữ lại cùng snapshot.
+     */
+    static final class Snapshot {
+        final long version;
+        final byte[][] parts;
+        final long length;
+        final String etag;
+        final long lastModified;
+        final String lastModifiedHeader;
+        private final Map<String, byte[]> variants = new ConcurrentHashMap<>(4);
+
+        private Snapshot(long version, byte[][] parts, long renderedAt) {
+            this.version = version;
+            this.parts = parts;
+            long total = 0;
+            CRC32 crc = new CRC32();
+            for (byte[] part : parts) {
+                total += part.length;
+                crc.update(part);
+            }
+            this.length = total;
+            this.etag = ConditionalRequests.etag(total, crc.getValue());
+            this.lastModified = renderedAt / 1000 * 1000;
+            this.lastModifiedHeader = ConditionalRequests.formatDate(lastModified);
+        }
+
+        void writeTo(OutputStream os) throws IOException {
+            for (byte[] part : parts) {
+                os.write(part);
+            }
+        }
+
+        /** Nội dung đã nén theo {@code encoding}, nén một lần cho mỗi snapshot. */
+        byte[] variant(String encoding) {
+            return variants.computeIfAbsent(encoding, e -> CompressionFilter.compress(parts, e));
+        }
+    }
+
+    private final Object[] segments;  // byte[] cho đoạn tĩnh, Fragment cho đoạn động
+    private final String[] sources;    // chuỗi gốc của đoạn tĩnh (null với fragment)
+    private final Fragment[] fragments;
+    private volatile Snapshot current;
+
+    private ResponseTemplate(List<Object> parts) {
+        segments = new Object[parts.size()];
+        sources = new String[parts.size()];
+        List<Fragment> dynamic = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            Object part = parts.get(i);
+            if (part instanceof Fragment) {
+                segments[i] = part;
+                dynamic.add((Fragment) part);
+            } else {
+                sources[i] = (String) part;
+                segments[i] = sources[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        fragments = dynamic.toArray(new Fragment[0]);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /** Fragment hiển thị giờ hiện tại theo {@code pattern}, làm mới mỗi giây. */
+    static Fragment clock(String pattern) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        return new Fragment() {
+            @Override
+            public long versionAt(long epochMillis) {
+                return epochMillis / 1000;
+            }
+
+            @Override
+            public String render(long epochMillis) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault())
+                    .format(formatter);
+            }
+        };
+    }
+
+    /**
+     * Snapshot hợp lệ tại thời điểm hiện tại. Chỉ tạo snapshot mới khi một fragment đổi phiên bản;
+     * nhiều thread có thể cùng render lại trong cùng một nhịp, kết quả như nhau nên không cần khóa.
+     */
+    Snapshot snapshot() {
+        return snapshotAt(System.currentTimeMillis());
+    }
+
+    Snapshot snapshotAt(long epochMillis) {
+        long version = versionAt(epochMillis);
+        Snapshot snapshot = current;
+        if (snapshot == null || snapshot.version != version) {
+            snapshot = render(version, epochMillis);
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Render toàn bộ trang thành String theo cách cũ (StringBuilder + getBytes mỗi request).
+     * Chỉ dùng làm mốc so sánh trong {@link Benchmarks}.
+     */
+    String renderString(long epochMillis) {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (sources[i] != null) {
+                html.append(sources[i]);
+            } else {
+                html.append(((Fragment) segments[i]).render(epochMillis));
+            }
+        }
+        return html.toString();
+    }
+
+    private long versionAt(long epochMillis) {
+        long version = 0;
+        for (Fragment fragment : fragments) {
+            version = version * 31 + fragment.versionAt(epochMillis);
+        }
+        return version;
+    }
+
+    private Snapshot render(long version, long epochMillis) {
+        byte[][] parts = new byte[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] instanceof Fragment) {
+                parts[i] = ((Fragment) segments[i]).render(epochMillis).getBytes(StandardCharsets.UTF_8);
+            } else {
+                parts[i] = (byte[]) segments[i];
+            }
+        }
+        return new Snapshot(version, parts, epochMillis);
+    }
+
+    static final class Builder {
+        private final List<Object> parts = new ArrayList<>();
+        private StringBuilder pending;
+
+        /** Thêm văn bản tĩnh; các đoạn liền nhau được gộp lại thành một mảng byte. */
+        Builder text(String text) {
+            if (pending == null) {
+                pending = new StringBuilder();
+            }
+            pending.append(text);
+            return this;
+        }
+
+        Builder fragment(Fragment fragment) {
+            flushText();
+            parts.add(Objects.requireNonNull(fragment, "fragment"));
+            return this;
+        }
+
+        ResponseTemplate build() {
+            flushText();
+            return new ResponseTemplate(parts);
+        }
+
+        private void flushText() {
+            if (pending != null) {
+                parts.add(pending.toString());
+                pending = null;
+            }
+        }
+    }
+}
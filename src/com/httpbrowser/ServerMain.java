@@ -0,0 +1,113 @@
+package com.httpbrowser;
+
+import java.nio.file.Paths;
+import java.time.*;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Server Main - chạy riêng {@link WebServer}, không có giao diện.
+ *
+ * Dành cho build agent và container: không nạp lớp AWT/Swing nào, cấu hình lấy từ command
+ * line, dừng khi nhận SIGTERM/Ctrl+C (drain request đang xử lý với {@code --engine nio}). In ra thời gian từ lúc JVM khởi động tới
+ * khi listener sẵn sàng và tới request đầu tiên.
+ * <pre>
+ * java --module-path bin -m SimpleHttpBrowser/com.httpbrowser.ServerMain --port 8080 --mode virtual
+ * </pre>
+ */
+public final class ServerMain {
+    private static final String USAGE = String.join("\n",
+        "Usage: ServerMain [options]",
+        "  --port N               port HTTP (mặc định 8080, 0 = ngẫu nhiên)",
+        "  --https-port N         bật HTTPS trên port này (mặc định tắt)",
+        "  --engine jdk|nio       engine HTTP (mặc định jdk)",
+        "  --mode inline|virtual|pool",
+        "                         cách chạy handler (mặc định virtual)",
+        "  --pool-size N          số thread cho --mode pool (mặc định 2 x CPU)",
+        "  --data DIR             lưu /api/users vào write-ahead log trong DIR",
+        "  --static DIR           thư mục cho /static (mặc định ./www)",
+        "  --access-log FILE|off  file access log (mặc định ./server.log)",
+        "  --shutdown-timeout S   số giây chờ request đang xử lý khi dừng (mặc định 10, chỉ engine nio)",
+        "  --help                 in hướng dẫn này");
+
+    private ServerMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = 8080;
+        int httpsPort = -1;
+        WebServer.Engine engine = WebServer.Engine.JDK;
+        WebServer.ExecutionMode mode = WebServer.ExecutionMode.VIRTUAL_THREADS;
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        String dataDirectory = null;
+        String staticRoot = null;
+        String accessLog = null;
+        long shutdownSeconds = 10;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--help") || option.equals("-h")) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--port" -> port = Integer.parseInt(value);
+                    case "--https-port" -> httpsPort = Integer.parseInt(value);
+                    case "--engine" -> engine = WebServer.Engine.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--mode" -> mode = parseMode(value);
+                    case "--pool-size" -> poolSize = Integer.parseInt(value);
+                    case "--data" -> dataDirectory = value;
+                    case "--static" -> staticRoot = value;
+                    case "--access-log" -> accessLog = value;
+                    case "--shutdown-timeout" -> shutdownSeconds = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+        WebServer server = new WebServer(port, mode, poolSize, engine);
+        server.setHttpsPort(httpsPort);
+        server.setShutdownTimeout(Duration.ofSeconds(shutdownSeconds));
+        if (dataDirectory != null) {
+            server.setDataDirectory(Paths.get(dataDirectory));
+        }
+        if (staticRoot != null) {
+            server.setStaticRoot(Paths.get(staticRoot));
+        }
+        if (accessLog != null) {
+            server.setAccessLogPath(accessLog.equals("off") ? null : Paths.get(accessLog));
+        }
+        server.setFirstRequestListener(() -> System.out.println("⏱️ Request đầu tiên sau "
+            + Duration.between(jvmStart, Instant.now()).toMillis() + " ms kể từ khi JVM khởi động"));
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            stopped.countDown();
+        }, "server-shutdown"));
+        server.start();
+        System.out.println("🚀 Sẵn sàng sau " + Duration.between(jvmStart, Instant.now()).toMillis()
+            + " ms kể từ khi JVM khởi động (http://localhost:" + server.getPort() + "/)");
+        stopped.await();
+    }
+
+    private static WebServer.ExecutionMode parseMode(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "inline" -> WebServer.ExecutionMode.INLINE;
+            case "virtual" -> WebServer.ExecutionMode.VIRTUAL_THREADS;
+            case "pool" -> WebServer.ExecutionMode.BOUNDED_POOL;
+            default -> WebServer.ExecutionMode.valueOf(value.toUpperCase(Locale.ROOT));
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server Metrics - số liệu theo từng context của WebServer và xuất ra định dạng
+ * text kiểu Prometheus cho endpoint /metrics.
+ */
+final class ServerMetrics {
+
+    /** Bộ đếm của một context. Mọi bộ đếm đều là LongAdder/atomic nên không cần khóa. */
+    static final class Endpoint {
+        final String context;
+        final LongAdder requests = new LongAdder();
+        final LongAdder[] statusClasses = new LongAdder[5]; // 1xx .. 5xx
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder inFlight = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Endpoint(String context) {
+            this.context = context;
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long in, long out, long nanos) {
+            requests.increment();
+            int statusClass = status / 100 - 1;
+            if (statusClass >= 0 && statusClass < statusClasses.length) {
+                statusClasses[statusClass].increment();
+            }
+            bytesIn.add(in);
+            bytesOut.add(out);
+            latency.record(nanos);
+        }
+    }
+
+    /** Một series cấp server (không theo context), ví dụ số record access log bị bỏ. */
+    private static final class Series {
+        final String name;
+        final String help;
+        final String type;
+        final LongSupplier value;
+
+        Series(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private final List<Series> series = new CopyOnWriteArrayList<>();
+    private final long startedAt = System.currentTimeMillis();
+    private volatile AccessLog accessLog;
+
+    Endpoint endpoint(String context) {
+        return endpoints.computeIfAbsent(context, Endpoint::new);
+    }
+
+    Collection<Endpoint> endpoints() {
+        return endpoints.values();
+    }
+
+    /** Filter đo lường cho một context; nên là filter đầu tiên để đếm cả byte sau khi nén. */
+    Filter filter(String context) {
+        return new InstrumentationFilter(this, endpoint(context));
+    }
+
+    /** Access log nhận một record cho mỗi request đã xong (null = tắt). */
+    void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Đăng ký một series cấp server.
+     * @param type "counter" hoặc "gauge"
+     */
+    void register(String name, String help, String type, LongSupplier value) {
+        series.add(new Series(name, help, type, value));
+    }
+
+    /** Xuất toàn bộ số liệu theo định dạng text exposition 0.0.4 của Prometheus. */
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP httpserver_uptime_seconds Time since the server started.\n");
+        out.append("# TYPE httpserver_uptime_seconds gauge\n");
+        out.append("httpserver_uptime_seconds ")
+            .append((System.currentTimeMillis() - startedAt) / 1000.0).append('\n');
+        for (Series s : series) {
+            out.append("# HELP ").append(s.name).append(' ').append(s.help).append('\n');
+            out.append("# TYPE ").append(s.name).append(' ').append(s.type).append('\n');
+            out.append(s.name).append(' ').append(s.value.getAsLong()).append('\n');
+        }
+
+        out.append("# HELP http_requests_total Completed requests by context and status class.\n");
+        out.append("# TYPE http_requests_total counter\n");
+        for (Endpoint endpoint : endpoints.values()) {
+            for (int i = 0; i < endpoint.statusClasses.length; i++) {
+                out.append("http_requests_total{context=\"").append(endpoint.context)
+                    .append("\",status=\"").append(i + 1).append("xx\"} ")
+                    .append(endpoint.statusClasses[i].sum()).append('\n');
+            }
+        }
+
+        appendCounter(out, "http_request_bytes_total", "Request body bytes received.", e -> e.bytesIn.sum());
+        appendCounter(out, "http_response_bytes_total", "Response body bytes sent (after compression).",
+            e -> e.bytesOut.sum());
+
+        out.append("# HELP http_requests_in_flight Requests currently being handled.\n");
+        out.append("# TYPE http_requests_in_flight gauge\n");
+        for (Endpoint endpoint : endpoints.values()) {
+            out.append("http_requests_in_flight{context=\"").append(endpoint.context).append("\"} ")
+                .append(endpoint.inFlight.sum()).append('\n');
+        }
+
+        out.append("# HELP http_request_duration_seconds Request latency.\n");
+        out.append("# TYPE http_request_duration_seconds histogram\n");
+        for (Endpoint endpoint : endpoints.values()) {
+            LatencyHistogram histogram = endpoint.latency;
+            long cumulative = 0;
+            for (int i = 0; i < histogram.bucketCount(); i++) {
+                cumulative += histogram.bucket(i);
+                String le = i < LatencyHistogram.BOUNDS_MICROS.length
+                    ? String.valueOf(LatencyHistogram.BOUNDS_MICROS[i] / 1_000_000.0) : "+Inf";
+                out.append("http_request_duration_seconds_bucket{context=\"").append(endpoint.context)
+                    .append("\",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("http_request_duration_seconds_sum{context=\"").append(endpoint.context).append("\"} ")
+                .append(histogram.sumSeconds()).append('\n');
+            out.append("http_request_duration_seconds_count{context=\"").append(endpoint.context).append("\"} ")
+                .append(cumulative).append('\n');
+        }
+        return out.toString();
+    }
+
+    private interface Counter {
+        long value(Endpoint endpoint);
+    }
+
+    private void appendCounter(StringBuilder out, String name, String help, Counter counter) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Endpoint endpoint : endpoints.values()) {
+            out.append(name).append("{context=\"").append(endpoint.context).append("\"} ")
+                .append(counter.value(endpoint)).append('\n');
+        }
+    }
+
+    /** Handler cho /metrics. */
+    final class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    /**
+     * Bọc handler của một context: đếm request, status, byte vào/ra, in-flight và latency,
+     * rồi publish record vào access log (nếu có).
+     */
+    private static final class InstrumentationFilter extends Filter {
+        private final ServerMetrics metrics;
+        private final Endpoint endpoint;
+
+        InstrumentationFilter(ServerMetrics metrics, Endpoint endpoint) {
+            this.metrics = metrics;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public String description() {
+            return "Request metrics for " + endpoint.context;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            endpoint.inFlight.increment();
+            ObservedExchange observed = new ObservedExchange(exchange);
+            boolean failed = true;
+            try {
+                chain.doFilter(observed);
+                failed = false;
+            } finally {
+                endpoint.inFlight.decrement();
+                int status = observed.status();
+                if (status <= 0) {
+                    status = failed ? 500 : 200;
+                }
+                long latency = System.nanoTime() - start;
+                endpoint.record(status, observed.bytesIn(), observed.bytesOut(), latency);
+                AccessLog log = metrics.accessLog;
+                if (log != null) {
+                    log.publish(exchange.getRequestMethod(), exchange.getRequestURI(),
+                        exchange.getRemoteAddress(), status, observed.bytesOut(), latency);
+                }
+            }
+        }
+    }
+
+    /** Exchange ghi nhận status code và đếm số byte đọc/ghi qua body. */
+    static final class ObservedExchange extends ForwardingExchange {
+        private int status = -1;
+        private CountingInputStream in;
+        private CountingOutputStream out;
+
+        ObservedExchange(HttpExchange delegate) {
+            super(delegate);
+        }
+
+        int status() {
+            return status;
+        }
+
+        long bytesIn() {
+            return in != null ? in.count : 0;
+        }
+
+        long bytesOut() {
+            return out != null ? out.count : 0;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            status = rCode;
+            super.sendResponseHeaders(rCode, responseLength);
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            if (in == null) {
+                in = new CountingInputStream(super.getRequestBody());
+            }
+            return in;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            if (out == null) {
+                out = new CountingOutputStream(super.getResponseBody());
+            }
+            return out;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len); // ghi thẳng, không đi qua write(int) từng byte
+            count += len;
+        }
+    }
+}
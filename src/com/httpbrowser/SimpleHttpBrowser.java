@@ -2,6 +2,10 @@ package com.httpbrowser;
 
 import javax.swing.*;
 import java.awt.*;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Simple HTTP Browser - Main Application
@@ -13,6 +17,9 @@ public class SimpleHttpBrowser extends JFrame {
     private WebClient webClient;
     private WebServer webServer;
     private JTabbedPane mainTabbedPane;
+    private final transient List<Supplier<Component>> tabFactories = new ArrayList<>();
+    private final Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+    private boolean firstPaintDone;
     
     public SimpleHttpBrowser() {
         initializeUI();
@@ -25,30 +32,92 @@ public class SimpleHttpBrowser extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Main tabbed pane
+        // Main tabbed pane: mỗi tab chỉ được tạo khi được chọn lần đầu (xem addLazyTab)
         mainTabbedPane = new JTabbedPane();
         
         // Modern Web Browser Tab (NEW! - Best Quality)
-        ModernWebBrowser modernBrowser = new ModernWebBrowser();
-        mainTabbedPane.addTab("🌍 Modern Browser (BEST)", modernBrowser.getPanel());
+        addLazyTab("🌍 Modern Browser (BEST)", () -> new ModernWebBrowser().getPanel());
         
-        // Web Browser Tab (NEW!)
-        WebBrowser webBrowser = new WebBrowser();
-        mainTabbedPane.addTab("🌐 Classic Browser", webBrowser);
+        // Web Browser Tab (NEW!) - tự tải trang chủ khi hiện lên
+        addLazyTab("🌐 Classic Browser", WebBrowser::new);
         
         // Web Client Tab (Advanced HTTP Client)
-        webClient = new WebClient();
-        mainTabbedPane.addTab("🔧 Advanced Client", webClient.getPanel());
+        addLazyTab("🔧 Advanced Client", () -> {
+            webClient = new WebClient();
+            return webClient.getPanel();
+        });
         
         // Server Monitor Tab
-        JPanel serverPanel = createServerMonitorPanel();
-        mainTabbedPane.addTab("🖧 Server Monitor", serverPanel);
+        addLazyTab("🖧 Server Monitor", this::createServerMonitorPanel);
         
+        mainTabbedPane.addChangeListener(e -> buildSelectedTab());
         add(mainTabbedPane);
     }
     
+    /**
+     * Thêm tab với panel giữ chỗ; nội dung thật được tạo trên EDT khi tab được chọn lần đầu.
+     * Tab đang chọn lúc mở cửa sổ được tạo ngay sau lần vẽ đầu tiên.
+     */
+    private void addLazyTab(String title, Supplier<Component> factory) {
+        JPanel placeholder = new JPanel(new BorderLayout());
+        JLabel loading = new JLabel("⏳ Đang tải...", SwingConstants.CENTER);
+        loading.setForeground(Color.GRAY);
+        placeholder.add(loading, BorderLayout.CENTER);
+        mainTabbedPane.addTab(title, placeholder);
+        tabFactories.add(factory);
+    }
+    
+    private void buildSelectedTab() {
+        int index = mainTabbedPane.getSelectedIndex();
+        if (index < 0 || tabFactories.get(index) == null) {
+            return;
+        }
+        Supplier<Component> factory = tabFactories.set(index, null);
+        long started = System.nanoTime();
+        mainTabbedPane.setComponentAt(index, factory.get());
+        System.out.println("🧩 Tab \"" + mainTabbedPane.getTitleAt(index) + "\" tạo trong "
+            + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+    
+    /**
+     * Lần vẽ đầu tiên: in time-to-first-paint, tạo tab đang chọn rồi làm nóng phần còn lại
+     * (HttpTransport dùng chung, nạp lớp của các tab) trên thread nền để lần chọn tab sau nhanh hơn.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!firstPaintDone) {
+            firstPaintDone = true;
+            System.out.println("🎨 First paint sau "
+                + Duration.between(jvmStart, Instant.now()).toMillis() + " ms kể từ khi JVM khởi động");
+            SwingUtilities.invokeLater(this::buildSelectedTab);
+            Thread warmUp = new Thread(SimpleHttpBrowser::warmUp, "tab-warmup");
+            warmUp.setDaemon(true);
+            warmUp.setPriority(Thread.MIN_PRIORITY);
+            warmUp.start();
+        }
+    }
+    
+    private static void warmUp() {
+        HttpTransport.shared();
+        ClassLoader loader = SimpleHttpBrowser.class.getClassLoader();
+        for (String name : new String[] {
+                "com.httpbrowser.WebBrowser", "com.httpbrowser.WebClient",
+                "javax.swing.text.html.HTMLEditorKit", "javax.swing.text.html.HTMLDocument",
+                "javax.swing.text.html.parser.ParserDelegator"}) {
+            try {
+                // Chỉ nạp lớp, không khởi tạo: static init của Swing phải chạy trên EDT
+                Class.forName(name, false, loader);
+            } catch (ClassNotFoundException e) {
+                // bỏ qua
+            }
+        }
+    }
+    
     private void startWebServer() {
-        webServer = new WebServer(8080);
+        webServer = new WebServer(8080, WebServer.ExecutionMode.VIRTUAL_THREADS);
+        webServer.setHttpsPort(8443);
+        webServer.setDataDirectory(java.nio.file.Paths.get("data"));
         new Thread(() -> {
             try {
                 webServer.start();
@@ -79,7 +148,7 @@ public class SimpleHttpBrowser extends JFrame {
         infoPanel.add(new JLabel("8080"));
         
         infoPanel.add(new JLabel("🔒 Port HTTPS:"));
-        infoPanel.add(new JLabel("8443 (nếu có SSL)"));
+        infoPanel.add(new JLabel("8443 (chứng chỉ tự ký, server.p12)"));
         
         infoPanel.add(new JLabel("🌐 URL HTTP:"));
         infoPanel.add(new JLabel("http://localhost:8080/"));
@@ -108,11 +177,33 @@ public class SimpleHttpBrowser extends JFrame {
         testButton.addActionListener(e -> testLocalServer());
         controlPanel.add(testButton);
         
+        JButton metricsButton = new JButton("📈 Metrics");
+        metricsButton.addActionListener(e -> {
+            logArea.setText(webServer.renderMetrics());
+            logArea.setCaretPosition(0);
+        });
+        controlPanel.add(metricsButton);
+        
+        JButton infoButton = new JButton("📋 Info");
+        infoButton.addActionListener(e -> logArea.setText(getServerInfo()));
+        controlPanel.add(infoButton);
+        
         JButton stopButton = new JButton("⏹️ Stop Server");
         stopButton.addActionListener(e -> {
-            webServer.stop();
-            statusLabel.setText("🔴 Stopped");
-            statusLabel.setForeground(Color.RED);
+            // Drain có thể mất tới vài giây: không chặn EDT
+            stopButton.setEnabled(false);
+            statusLabel.setText("🟡 Stopping...");
+            statusLabel.setForeground(Color.ORANGE);
+            new Thread(() -> {
+                WebServer.ShutdownReport report = webServer.stop(java.time.Duration.ofSeconds(10));
+                SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText("🔴 Stopped");
+                    statusLabel.setForeground(Color.RED);
+                    if (report != null) {
+                        logArea.append("\n🛑 Server stopped: " + report + "\n");
+                    }
+                });
+            }).start();
         });
         controlPanel.add(stopButton);
         
@@ -133,7 +224,10 @@ public class SimpleHttpBrowser extends JFrame {
         info.append("  📝 GET  /info      - Thông tin server\n");
         info.append("  📊 POST /echo      - Echo POST data\n");
         info.append("  🔍 HEAD /status    - Status check\n");
-        info.append("  📱 GET  /api/users - Demo API JSON\n\n");
+        info.append("  📱 GET/POST/PUT/DELETE /api/users[/{id}] - User API (?cursor=&limit=)\n");
+        info.append("  🗂️ GET  /static/*  - File tĩnh (thư mục ./www)\n");
+        info.append("  🧪 GET  /bench/*   - Tải tổng hợp: html, json, bytes, delay, drip\n");
+        info.append("  📈 GET  /metrics   - Số liệu kiểu Prometheus\n\n");
         info.append("🧪 Test URLs:\n");
         info.append("  • http://localhost:8080/\n");
         info.append("  • http://localhost:8080/test\n");
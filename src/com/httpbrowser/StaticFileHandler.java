@@ -0,0 +1,286 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Static File Handler - phục vụ file tĩnh từ một thư mục gốc.
+ *
+ * File được stream bằng {@link FileChannel#transferTo} thay vì đọc vào heap, nên file
+ * nhiều GB chỉ tốn một buffer nhỏ cố định. Hỗ trợ Range/If-Range (một khoảng byte),
+ * ETag/Last-Modified và cache metadata của file trong thời gian ngắn để tránh stat mỗi request.
+ */
+final class StaticFileHandler implements HttpHandler {
+    private static final long METADATA_TTL_MILLIS = 2000;
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=UTF-8");
+        CONTENT_TYPES.put("css", "text/css; charset=UTF-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=UTF-8");
+        CONTENT_TYPES.put("json", "application/json; charset=UTF-8");
+        CONTENT_TYPES.put("txt", "text/plain; charset=UTF-8");
+        CONTENT_TYPES.put("xml", "application/xml; charset=UTF-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("zip", "application/zip");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+    }
+
+    /** Metadata đã cache của một file. */
+    private static final class FileInfo {
+        final Path path;
+        final long size;
+        final long lastModified;
+        final String etag;
+        final String lastModifiedHeader;
+        final String contentType;
+        final long checkedAt;
+
+        FileInfo(Path path, BasicFileAttributes attributes, long checkedAt) {
+            this.path = path;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.etag = ConditionalRequests.etag(size, lastModified);
+            this.lastModifiedHeader = ConditionalRequests.formatDate(lastModified);
+            this.contentType = contentTypeOf(path);
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private final Path root;
+    private final String prefix;
+    private final Map<Path, FileInfo> metadata = new ConcurrentHashMap<>();
+
+    /**
+     * @param root   thư mục gốc chứa file
+     * @param prefix đường dẫn context, ví dụ "/static"
+     */
+    StaticFileHandler(Path root, String prefix) {
+        this.root = root.toAbsolutePath().normalize();
+        this.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            sendError(exchange, 405, "Method Not Allowed");
+            return;
+        }
+
+        FileInfo file = lookup(exchange.getRequestURI().getPath());
+        if (file == null) {
+            sendError(exchange, 404, "Not Found");
+            return;
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", file.contentType);
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("Cache-Control", "public, max-age=60");
+        ConditionalRequests.applyValidators(headers, file.etag, file.lastModifiedHeader);
+
+        // Response 200 sẽ được CompressionFilter nén và đổi ETag sang biến thể (-gzip/-deflate),
+        // nên validator client giữ là ETag biến thể; thương lượng trước như sendSnapshot
+        String encoding = CompressionFilter.negotiated(exchange);
+        if (file.size < CompressionFilter.DEFAULT_MIN_SIZE || !CompressionFilter.isCompressible(file.contentType)) {
+            encoding = null;
+        }
+        String etag = CompressionFilter.variantEtag(file.etag, encoding);
+
+        if (ConditionalRequests.isNotModified(exchange, etag, file.lastModified)) {
+            headers.set("ETag", etag); // 304 mang validator của biến thể client đang giữ
+            ConditionalRequests.sendNotModified(exchange);
+            return;
+        }
+
+        long start = 0;
+        long length = file.size;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && "GET".equals(method) && ifRangeMatches(exchange, file)) {
+            long[] bounds = parseRange(range, file.size);
+            if (bounds == UNSATISFIABLE) {
+                headers.set("Content-Range", "bytes */" + file.size);
+                sendError(exchange, 416, "Range Not Satisfiable");
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                status = 206;
+                headers.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + file.size);
+            }
+        }
+
+        if ("HEAD".equals(method)) {
+            headers.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            // length 0 nghĩa là chunked với HttpServer, nên file rỗng gửi -1
+            exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                WritableByteChannel target = Channels.newChannel(os);
+                long position = start;
+                long remaining = length;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break; // file bị cắt ngắn trong lúc gửi
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        }
+    }
+
+    /** Tìm file cho đường dẫn request; null nếu không tồn tại hoặc nằm ngoài thư mục gốc. */
+    private FileInfo lookup(String requestPath) throws IOException {
+        if (requestPath == null || !requestPath.startsWith(prefix) || requestPath.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path path = root.resolve(requestPath.substring(prefix.length())).normalize();
+        if (!path.startsWith(root)) {
+            return null; // chặn ../ ra ngoài thư mục gốc
+        }
+
+        long now = System.currentTimeMillis();
+        Path key = path;
+        FileInfo cached = metadata.get(key);
+        if (cached != null && now - cached.checkedAt < METADATA_TTL_MILLIS) {
+            return cached;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.isDirectory()) {
+                path = path.resolve("index.html");
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            }
+            if (!attributes.isRegularFile()) {
+                metadata.remove(key);
+                return null;
+            }
+            FileInfo info = new FileInfo(path, attributes, now);
+            metadata.put(key, info);
+            return info;
+        } catch (NoSuchFileException e) {
+            metadata.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * If-Range: chỉ áp dụng Range khi validator khớp với bản hiện tại. Response 206 luôn là byte
+     * identity, nên chỉ so với ETag identity: client giữ biến thể nén nhận lại cả file (200).
+     */
+    private static boolean ifRangeMatches(HttpExchange exchange, FileInfo file) {
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(file.etag); // If-Range yêu cầu so khớp strong
+        }
+        long date = ConditionalRequests.parseDate(ifRange);
+        return date >= 0 && date / 1000 == file.lastModified / 1000;
+    }
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * Parse header Range dạng một khoảng: {@code bytes=a-b}, {@code bytes=a-}, {@code bytes=-n}.
+     * @return {start, end} (bao gồm end), null nếu bỏ qua Range (nhiều khoảng hoặc sai cú pháp),
+     *         hoặc {@link #UNSATISFIABLE}
+     */
+    static long[] parseRange(String header, long size) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = value.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = size - 1;
+                if (!last.isEmpty()) {
+                    long requestedEnd = Long.parseLong(last);
+                    if (requestedEnd < start) {
+                        return null; // last < first: cú pháp không hợp lệ, bỏ qua Range
+                    }
+                    end = Math.min(requestedEnd, size - 1);
+                }
+            }
+            if (start >= size || size == 0) {
+                return UNSATISFIABLE;
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentTypeOf(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            String type = CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (type != null) {
+                return type;
+            }
+        }
+        try {
+            String probed = Files.probeContentType(path);
+            if (probed != null) {
+                return probed;
+            }
+        } catch (IOException e) {
+            // dùng mặc định bên dưới
+        }
+        return "application/octet-stream";
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import javax.net.ssl.*;
+
+/**
+ * TLS Support - keystore tự sinh cho localhost và SSLContext phía server có đếm handshake.
+ *
+ * Keystore PKCS12 được tạo một lần bằng {@code keytool} của JDK đang chạy (khóa EC P-256,
+ * ký và bắt tay rẻ hơn RSA). SSLContext trả về bọc SSLContext gốc để mỗi SSLEngine báo lại
+ * khi handshake xong; handshake được coi là resume khi session có thời điểm tạo sớm hơn
+ * engine (session lấy lại từ cache hoặc session ticket), ngược lại là full handshake.
+ */
+final class TlsSupport {
+    static final String KEY_ALIAS = "localhost";
+
+    /** Bộ đếm handshake phía server. */
+    static final class HandshakeStats {
+        final LongAdder full = new LongAdder();
+        final LongAdder resumed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+
+    private TlsSupport() {
+    }
+
+    /**
+     * Tạo keystore tự ký cho localhost nếu file chưa tồn tại.
+     * @return đường dẫn keystore
+     */
+    static Path ensureKeystore(Path keystore, char[] password) throws IOException {
+        if (Files.exists(keystore)) {
+            return keystore;
+        }
+        Path parent = keystore.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path keytool = Paths.get(System.getProperty("java.home"), "bin",
+            System.getProperty("os.name").startsWith("Windows") ? "keytool.exe" : "keytool");
+        ProcessBuilder builder = new ProcessBuilder(keytool.toString(),
+            "-genkeypair", "-alias", KEY_ALIAS,
+            "-keyalg", "EC", "-groupname", "secp256r1",
+            "-dname", "CN=localhost, O=SimpleHttpBrowser",
+            "-ext", "SAN=dns:localhost,ip:127.0.0.1,ip:::1",
+            "-validity", "3650",
+            "-storetype", "PKCS12",
+            "-keystore", keystore.toString(),
+            "-storepass", new String(password));
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        }
+        try {
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IOException("keytool failed: " + output.trim());
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while generating keystore");
+        }
+        System.out.println("🔑 Đã tạo keystore tự ký: " + keystore.toAbsolutePath());
+        return keystore;
+    }
+
+    static KeyStore loadKeystore(Path keystore, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            store.load(in, password);
+        }
+        return store;
+    }
+
+    /**
+     * SSLContext cho server với session cache đã cấu hình.
+     * @param cacheSize             số session tối đa trong cache (0 = không giới hạn)
+     * @param sessionTimeoutSeconds thời gian sống của session (0 = không giới hạn)
+     * @param stats                 nhận số full/resumed handshake
+     */
+    static SSLContext serverContext(Path keystore, char[] password, int cacheSize, int sessionTimeoutSeconds,
+                                    HandshakeStats stats) throws IOException, GeneralSecurityException {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(loadKeystore(keystore, password), password);
+        SSLContext base = SSLContext.getInstance("TLS");
+        base.init(keyManagers.getKeyManagers(), null, null);
+        SSLSessionContext sessions = base.getServerSessionContext();
+        sessions.setSessionCacheSize(cacheSize);
+        sessions.setSessionTimeout(sessionTimeoutSeconds);
+        return new SSLContext(new CountingContextSpi(base, stats), base.getProvider(), base.getProtocol()) {
+        };
+    }
+
+    /** SSLContext cho client chỉ tin chứng chỉ trong keystore đã sinh (dùng cho benchmark/test). */
+    static SSLContext trustingContext(Path keystore, char[] password) throws IOException, GeneralSecurityException {
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(loadKeystore(keystore, password));
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    private static final class CountingContextSpi extends SSLContextSpi {
+        private final SSLContext base;
+        private final HandshakeStats stats;
+
+        CountingContextSpi(SSLContext base, HandshakeStats stats) {
+            this.base = base;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+            throw new UnsupportedOperationException("already initialized");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return base.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return base.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return new CountingEngine(base.createSSLEngine(), stats);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return new CountingEngine(base.createSSLEngine(host, port), stats);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return base.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return base.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return base.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return base.getSupportedSSLParameters();
+        }
+    }
+
+    /** SSLEngine chuyển tiếp mọi lời gọi, chỉ ghi nhận lúc handshake hoàn tất. */
+    private static final class CountingEngine extends SSLEngine {
+        private final SSLEngine delegate;
+        private final HandshakeStats stats;
+        private final long createdAt = System.currentTimeMillis();
+        private boolean counted;
+
+        CountingEngine(SSLEngine delegate, HandshakeStats stats) {
+            super(delegate.getPeerHost(), delegate.getPeerPort());
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        private SSLEngineResult observe(SSLEngineResult result) {
+            if (!counted && result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                counted = true;
+                if (delegate.getSession().getCreationTime() < createdAt) {
+                    stats.resumed.increment();
+                } else {
+                    stats.full.increment();
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+            return observe(delegate.wrap(srcs, offset, length, dst));
+        }
+
+        @Override
+        public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length)
+                throws SSLException {
+            try {
+                return observe(delegate.unwrap(src, dsts, offset, length));
+            } catch (SSLException e) {
+                if (!counted) {
+                    counted = true;
+                    stats.failed.increment();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public Runnable getDelegatedTask() {
+            return delegate.getDelegatedTask();
+        }
+
+        @Override
+        public void closeInbound() throws SSLException {
+            delegate.closeInbound();
+        }
+
+        @Override
+        public boolean isInboundDone() {
+            return delegate.isInboundDone();
+        }
+
+        @Override
+        public void closeOutbound() {
+            delegate.closeOutbound();
+        }
+
+        @Override
+        public boolean isOutboundDone() {
+            return delegate.isOutboundDone();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public String[] getEnabledCipherSuites() {
+            return delegate.getEnabledCipherSuites();
+        }
+
+        @Override
+        public void setEnabledCipherSuites(String[] suites) {
+            delegate.setEnabledCipherSuites(suites);
+        }
+
+        @Override
+        public String[] getSupportedProtocols() {
+            return delegate.getSupportedProtocols();
+        }
+
+        @Override
+        public String[] getEnabledProtocols() {
+            return delegate.getEnabledProtocols();
+        }
+
+        @Override
+        public void setEnabledProtocols(String[] protocols) {
+            delegate.setEnabledProtocols(protocols);
+        }
+
+        @Override
+        public SSLSession getSession() {
+            return delegate.getSession();
+        }
+
+        @Override
+        public SSLSession getHandshakeSession() {
+            return delegate.getHandshakeSession();
+        }
+
+        @Override
+        public void beginHandshake() throws SSLException {
+            delegate.beginHandshake();
+        }
+
+        @Override
+        public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+            return delegate.getHandshakeStatus();
+        }
+
+        @Override
+        public void setUseClientMode(boolean mode) {
+            delegate.setUseClientMode(mode);
+        }
+
+        @Override
+        public boolean getUseClientMode() {
+            return delegate.getUseClientMode();
+        }
+
+        @Override
+        public void setNeedClientAuth(boolean need) {
+            delegate.setNeedClientAuth(need);
+        }
+
+        @Override
+        public boolean getNeedClientAuth() {
+            return delegate.getNeedClientAuth();
+        }
+
+        @Override
+        public void setWantClientAuth(boolean want) {
+            delegate.setWantClientAuth(want);
+        }
+
+        @Override
+        public boolean getWantClientAuth() {
+            return delegate.getWantClientAuth();
+        }
+
+        @Override
+        public void setEnableSessionCreation(boolean flag) {
+            delegate.setEnableSessionCreation(flag);
+        }
+
+        @Override
+        public boolean getEnableSessionCreation() {
+            return delegate.getEnableSessionCreation();
+        }
+
+        @Override
+        public SSLParameters getSSLParameters() {
+            return delegate.getSSLParameters();
+        }
+
+        @Override
+        public void setSSLParameters(SSLParameters params) {
+            delegate.setSSLParameters(params);
+        }
+
+        @Override
+        public String getApplicationProtocol() {
+            return delegate.getApplicationProtocol();
+        }
+
+        @Override
+        public String getHandshakeApplicationProtocol() {
+            return delegate.getHandshakeApplicationProtocol();
+        }
+
+        @Override
+        public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+            delegate.setHandshakeApplicationProtocolSelector(selector);
+        }
+
+        @Override
+        public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+            return delegate.getHandshakeApplicationProtocolSelector();
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package com.httpbrowser;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.regex.*;
+import java.util.zip.*;
+
+/**
+ * User Log - write-ahead log append-only cho {@link UserStore}, có snapshot và khôi phục.
+ *
+ * Mỗi thay đổi là một record {@code [độ dài][CRC32C][PUT|DELETE, id, version, name, email]}
+ * được chép vào segment file ánh xạ bộ nhớ (mmap) nên append chỉ là một lần copy. Độ bền
+ * dùng group commit: thread ghi gọi {@link #awaitDurable} và một thread commit duy nhất
+ * force() toàn bộ phần đã ghi, trả lời mọi thread đang chờ bằng một lần fsync.
+ *
+ * Sau mỗi {@code snapshotRecords} record, một snapshot được ghi ra file tạm rồi đổi tên
+ * nguyên tử; các segment cũ hơn snapshot bị xóa. Khi mở, log nạp snapshot rồi phát lại các
+ * segment còn lại; record hỏng ở cuối segment (ghi dở khi crash) bị bỏ qua. Mỗi lần mở
+ * ghi vào một segment mới, nên không bao giờ ghi đè lên phần đuôi hỏng.
+ *
+ * Dùng ReentrantLock/Condition thay vì synchronized để virtual thread chờ commit không
+ * giữ carrier thread.
+ */
+final class UserLog implements Closeable {
+    static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final long DEFAULT_SNAPSHOT_RECORDS = 1_000_000;
+    /** Độ dài tối đa (byte UTF-8) của name/email: WAL và snapshot ghi độ dài bằng 2 byte. */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int SNAPSHOT_MAGIC = 0x55534E50; // "USNP"
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final int MAX_SEGMENTS_WITHOUT_SNAPSHOT = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("users-(\\d{8})\\.wal");
+
+    private final Path directory;
+    private final UserStore store;
+    private final long segmentBytes;
+    private final long snapshotRecords;
+
+    // Trạng thái append, bảo vệ bởi appendLock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private int forcedOffset;
+    private long appended; // tổng số byte đã append (vị trí logic, tăng dần qua các segment)
+
+    // Group commit, bảo vệ bởi commitLock
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitRequested = commitLock.newCondition();
+    private final Condition committed = commitLock.newCondition();
+    private long requested;
+    private volatile long durable;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private final Thread committer;
+
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final long recoveredRecords;
+    private final long recoveryMillis;
+    private int replayFrom; // segment đầu tiên sau snapshot
+
+    private UserLog(Path directory, UserStore store, long segmentBytes, long snapshotRecords) throws IOException {
+        if (segmentBytes < 4096 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentBytes must be between 4 KB and 2 GB: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.store = store;
+        this.segmentBytes = segmentBytes;
+        this.snapshotRecords = snapshotRecords;
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        List<Integer> segments = segmentNumbers();
+        boolean hasData = Files.exists(directory.resolve(SNAPSHOT_FILE)) || !segments.isEmpty();
+        recoveredRecords = hasData ? recover(segments) : 0;
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+        recordsSinceSnapshot.set(recoveredRecords);
+
+        // Segment mới luôn đứng sau mọi segment cũ và sau điểm snapshot, để lần khôi phục sau phát lại nó
+        segmentNumber = Math.max(segments.isEmpty() ? 0 : segments.get(segments.size() - 1), replayFrom - 1);
+        openNextSegment();
+        committer = new Thread(this::commitLoop, "user-log-commit");
+        committer.setDaemon(true);
+        committer.start();
+        store.attachLog(this);
+        if (!hasData) {
+            snapshot(); // lần đầu: lưu dữ liệu đang có trong store (ví dụ user demo)
+        } else if (segments.stream().filter(number -> number >= replayFrom).count() >= MAX_SEGMENTS_WITHOUT_SNAPSHOT) {
+            startSnapshot(); // mỗi lần mở tạo một segment mới: gom lại để lần sau khôi phục nhanh
+        }
+    }
+
+    static UserLog open(Path directory, UserStore store) throws IOException {
+        return open(directory, store, DEFAULT_SEGMENT_BYTES, DEFAULT_SNAPSHOT_RECORDS);
+    }
+
+    /**
+     * Mở log trong {@code directory}: khôi phục dữ liệu đã có vào {@code store} (xóa nội dung
+     * hiện tại của store) rồi gắn log vào store để ghi các thay đổi sau đó.
+     * @param segmentBytes    kích thước mỗi segment file
+     * @param snapshotRecords số record giữa hai lần snapshot tự động (0 = không tự động)
+     */
+    static UserLog open(Path directory, UserStore store, long segmentBytes, long snapshotRecords)
+            throws IOException {
+        return new UserLog(directory.toAbsolutePath(), store, segmentBytes, snapshotRecords);
+    }
+
+    long appendPut(UserStore.User user) throws IOException {
+        byte[] name = user.name.getBytes(StandardCharsets.UTF_8);
+        byte[] email = user.email.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_STRING_BYTES || email.length > MAX_STRING_BYTES) {
+            throw new IOException("name/email too long for the log");
+        }
+        byte[] body = new byte[1 + 8 + 8 + 2 + name.length + 2 + email.length];
+        int offset = putHeader(body, PUT, user);
+        offset = putString(body, offset, name);
+        putString(body, offset, email);
+        return append(body);
+    }
+
+    long appendDelete(UserStore.User user) throws IOException {
+        byte[] body = new byte[1 + 8 + 8];
+        putHeader(body, DELETE, user);
+        return append(body);
+    }
+
+    /** Chờ tới khi mọi record tới vị trí {@code position} đã được force xuống đĩa. */
+    void awaitDurable(long position) throws IOException {
+        if (durable >= position) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            if (position > requested) {
+                requested = position;
+                commitRequested.signal();
+            }
+            while (durable < position) {
+                if (failure != null) {
+                    throw new IOException("user log commit failed", failure);
+                }
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Ghi snapshot của store. Log được chuyển sang segment mới trước khi chụp; snapshot
+     * "mờ" (store vẫn đang được ghi) vẫn đúng vì mọi thay đổi sau điểm chuyển đều nằm
+     * trong các segment được phát lại, và phát lại chỉ giữ version mới nhất.
+     * @return false nếu đang có snapshot khác chạy
+     */
+    boolean snapshot() throws IOException {
+        if (!snapshotRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            int firstSegment;
+            appendLock.lock();
+            try {
+                ensureOpen();
+                openNextSegment();
+                firstSegment = segmentNumber;
+                recordsSinceSnapshot.set(0);
+            } finally {
+                appendLock.unlock();
+            }
+
+            Path target = directory.resolve(SNAPSHOT_FILE);
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                // CRC tính trên từng khối 1 MB đã buffer, không phải từng field
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32C());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1024 * 1024));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeLong(store.nextId());
+                out.writeInt(firstSegment);
+                long count = 0;
+                for (UserStore.User user : store.after(0)) {
+                    out.writeLong(user.id);
+                    out.writeLong(user.version);
+                    writeString(out, user.name);
+                    writeString(out, user.email);
+                    count++;
+                }
+                out.writeLong(-1);
+                out.writeLong(count);
+                out.flush();
+                long checksum = checked.getChecksum().getValue();
+                byte[] trailer = new byte[8];
+                putLong(trailer, 0, checksum);
+                file.write(trailer);
+                file.getFD().sync();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (int number : segmentNumbers()) {
+                if (number < firstSegment) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+            snapshots.increment();
+            return true;
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    long records() {
+        return records.sum();
+    }
+
+    /** Số lần fsync của group commit. */
+    long commits() {
+        return commits.sum();
+    }
+
+    long snapshots() {
+        return snapshots.sum();
+    }
+
+    long recoveredRecords() {
+        return recoveredRecords;
+    }
+
+    long recoveryMillis() {
+        return recoveryMillis;
+    }
+
+    /** Force phần còn lại và đóng segment; các thay đổi sau đó của store báo lỗi. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        commitLock.lock();
+        try {
+            commitRequested.signal();
+        } finally {
+            commitLock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            channel.close();
+            commitLock.lock();
+            try {
+                durable = appended;
+                committed.signalAll();
+            } finally {
+                commitLock.unlock();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long append(byte[] body) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, body.length);
+        int checksum = (int) crc.getValue();
+        long position;
+        appendLock.lock();
+        try {
+            ensureOpen();
+            if (segment.remaining() < HEADER_BYTES + body.length) {
+                if (HEADER_BYTES + body.length > segmentBytes) {
+                    throw new IOException("record larger than a segment");
+                }
+                openNextSegment();
+            }
+            segment.putInt(body.length).putInt(checksum).put(body);
+            appended += HEADER_BYTES + body.length;
+            position = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        records.increment();
+        recordsSinceSnapshot.incrementAndGet();
+        return position;
+    }
+
+    /** Gọi khi giữ appendLock: force và đóng segment hiện tại, mở segment kế tiếp. */
+    private void openNextSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            channel.close();
+        }
+        segmentNumber++;
+        channel = FileChannel.open(segmentPath(segmentNumber),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        forcedOffset = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("user log is closed");
+        }
+        if (failure != null) {
+            throw new IOException("user log failed", failure);
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            commitLock.lock();
+            try {
+                while (!closed && requested <= durable) {
+                    commitRequested.awaitUninterruptibly();
+                }
+                if (closed && requested <= durable) {
+                    return;
+                }
+            } finally {
+                commitLock.unlock();
+            }
+
+            // Một lần force cho mọi record đã append tới lúc này
+            MappedByteBuffer buffer;
+            int from;
+            int to;
+            long target;
+            appendLock.lock();
+            try {
+                buffer = segment;
+                from = forcedOffset;
+                to = segment.position();
+                target = appended;
+                forcedOffset = to;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                if (to > from) {
+                    buffer.force(from, to - from);
+                }
+                commits.increment();
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            }
+
+            commitLock.lock();
+            try {
+                if (failure == null && target > durable) {
+                    durable = target;
+                }
+                committed.signalAll();
+            } finally {
+                commitLock.unlock();
+            }
+            if (failure != null) {
+                System.err.println("⚠️ User log không force được xuống đĩa: " + failure.getMessage());
+                return;
+            }
+            maybeSnapshot();
+        }
+    }
+
+    private void maybeSnapshot() {
+        if (snapshotRecords <= 0 || recordsSinceSnapshot.get() < snapshotRecords || snapshotRunning.get()) {
+            return;
+        }
+        startSnapshot();
+    }
+
+    private void startSnapshot() {
+        Thread thread = new Thread(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.err.println("⚠️ Không ghi được snapshot user: " + e.getMessage());
+            }
+        }, "user-log-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Nạp snapshot rồi phát lại các segment; trả về số record đã áp dụng. */
+    private long recover(List<Integer> segments) throws IOException {
+        store.clear();
+        long count = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            replayFrom = readSnapshot(snapshot);
+        }
+        byte[] scratch = new byte[256];
+        for (int number : segments) {
+            if (number < replayFrom) {
+                continue;
+            }
+            try (FileChannel file = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                while (buffer.remaining() >= HEADER_BYTES) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break; // hết phần đã ghi của segment
+                    }
+                    if (scratch.length < length) {
+                        scratch = new byte[Math.max(length, scratch.length * 2)];
+                    }
+                    buffer.get(scratch, 0, length);
+                    CRC32C crc = new CRC32C();
+                    crc.update(scratch, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        System.err.println("⚠️ Bỏ qua phần đuôi hỏng của " + segmentPath(number).getFileName()
+                            + " tại byte " + (buffer.position() - length - HEADER_BYTES));
+                        break;
+                    }
+                    apply(scratch, length);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void apply(byte[] body, int length) throws IOException {
+        byte type = body[0];
+        long id = getLong(body, 1);
+        long version = getLong(body, 9);
+        if (type == DELETE) {
+            store.restoreDelete(id);
+            return;
+        }
+        if (type != PUT) {
+            throw new IOException("unknown record type " + type);
+        }
+        int nameLength = ((body[17] & 0xFF) << 8) | (body[18] & 0xFF);
+        String name = new String(body, 19, nameLength, StandardCharsets.UTF_8);
+        int offset = 19 + nameLength;
+        int emailLength = ((body[offset] & 0xFF) << 8) | (body[offset + 1] & 0xFF);
+        if (offset + 2 + emailLength > length) {
+            throw new IOException("corrupt PUT record for user " + id);
+        }
+        String email = new String(body, offset + 2, emailLength, StandardCharsets.UTF_8);
+        store.restore(new UserStore.User(id, name, email, version));
+    }
+
+    /** @return segment đầu tiên cần phát lại sau snapshot */
+    private int readSnapshot(Path snapshot) throws IOException {
+        try (FileChannel file = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = file.size();
+            if (size < 20 + 16 + 8 || size > Integer.MAX_VALUE) {
+                throw new IOException("not a user snapshot: " + snapshot);
+            }
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // Kiểm tra CRC cả file trước khi đụng vào store
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, (int) size - 8));
+            if (buffer.getLong((int) size - 8) != crc.getValue()) {
+                throw new IOException("corrupt user snapshot (checksum): " + snapshot);
+            }
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT) {
+                throw new IOException("not a user snapshot: " + snapshot);
+            }
+            long nextId = buffer.getLong();
+            int firstSegment = buffer.getInt();
+            byte[] scratch = new byte[256];
+            long count = 0;
+            while (true) {
+                long id = buffer.getLong();
+                if (id < 0) {
+                    break;
+                }
+                long version = buffer.getLong();
+                int nameLength = buffer.getShort() & 0xFFFF;
+                if (scratch.length < nameLength) {
+                    scratch = new byte[0x10000];
+                }
+                buffer.get(scratch, 0, nameLength);
+                String name = new String(scratch, 0, nameLength, StandardCharsets.UTF_8);
+                int emailLength = buffer.getShort() & 0xFFFF;
+                if (scratch.length < emailLength) {
+                    scratch = new byte[0x10000];
+                }
+                buffer.get(scratch, 0, emailLength);
+                String email = new String(scratch, 0, emailLength, StandardCharsets.UTF_8);
+                store.restore(new UserStore.User(id, name, email, version));
+                count++;
+            }
+            if (buffer.getLong() != count) {
+                throw new IOException("corrupt user snapshot (count): " + snapshot);
+            }
+            store.advanceNextId(nextId);
+            return firstSegment;
+        }
+    }
+
+    private List<Integer> segmentNumbers() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "users-*.wal")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("users-%08d.wal", number));
+    }
+
+    private static int putHeader(byte[] body, byte type, UserStore.User user) {
+        body[0] = type;
+        putLong(body, 1, user.id);
+        putLong(body, 9, user.version);
+        return 17;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("string too long for the snapshot");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int putString(byte[] body, int offset, byte[] value) {
+        body[offset] = (byte) (value.length >>> 8);
+        body[offset + 1] = (byte) value.length;
+        System.arraycopy(value, 0, body, offset + 2, value.length);
+        return offset + 2 + value.length;
+    }
+
+    private static void putLong(byte[] body, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            body[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] body, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (body[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,308 @@
+package com.httpbrowser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * User Store - kho user trong bộ nhớ cho /api/users.
+ *
+ * User là object bất biến, lưu trong {@link ConcurrentSkipListMap} theo id (duyệt theo thứ tự
+ * để phân trang bằng cursor) cùng một index email -> id trong {@link ConcurrentHashMap} để
+ * kiểm tra trùng email. Đọc không bao giờ lấy lock nên không bị ghi chặn; email được giữ
+ * duy nhất bằng putIfAbsent trên index.
+ *
+ * Các thao tác ghi trên cùng một id được tuần tự hóa bằng lock phân dải (striped), chỉ trong
+ * lúc đổi bản ghi và chép record vào {@link UserLog}, để thứ tự trong log khớp với thứ tự
+ * áp dụng. Việc chờ fsync (group commit) diễn ra sau khi đã nhả lock. Nếu log không nhận
+ * record (đã đóng, lỗi commit trước đó, record quá lớn) thì thay đổi được hoàn tác ngay trong
+ * lock, để bộ nhớ không giữ trạng thái mà WAL chưa thấy (và email không bị giữ chỗ).
+ */
+final class UserStore {
+    /** Bản ghi user bất biến; {@code version} tăng mỗi lần cập nhật. */
+    static final class User {
+        final long id;
+        final String name;
+        final String email;
+        final long version;
+
+        User(long id, String name, String email, long version) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+            this.version = version;
+        }
+    }
+
+    /** Email đã thuộc về user khác. */
+    static final class DuplicateEmailException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        DuplicateEmailException(String email) {
+            super("Email already exists: " + email);
+        }
+    }
+
+    private static final String[] FAMILY_NAMES = {"Nguyen", "Tran", "Le", "Pham", "Hoang", "Vu", "Dang", "Bui"};
+    private static final String[] GIVEN_NAMES = {"An", "Binh", "Chi", "Dung", "Giang", "Hanh", "Khoa", "Linh",
+        "Minh", "Nam", "Phuong", "Quan", "Thao", "Trang", "Tuan", "Vy"};
+
+    private final ConcurrentSkipListMap<Long, User> byId = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong size = new AtomicLong(); // size() của skip list là O(n)
+    private final ReentrantLock[] stripes = new ReentrantLock[64];
+    private volatile UserLog log;
+
+    UserStore() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /** Ghi mọi thay đổi sau này vào log (null = chỉ trong bộ nhớ). */
+    void attachLog(UserLog log) {
+        this.log = log;
+    }
+
+    User get(long id) {
+        return byId.get(id);
+    }
+
+    User findByEmail(String email) {
+        Long id = idsByEmail.get(normalize(email));
+        return id != null ? byId.get(id) : null;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    /**
+     * Các user có id lớn hơn {@code afterId}, theo thứ tự id tăng dần. Đây là view đồng thời
+     * của skip list (không copy), duyệt không chặn các thao tác ghi.
+     */
+    Collection<User> after(long afterId) {
+        return byId.tailMap(afterId, false).values();
+    }
+
+    User create(String name, String email) throws DuplicateEmailException, IOException {
+        validate(name, email);
+        String key = normalize(email);
+        long id = nextId.getAndIncrement();
+        if (idsByEmail.putIfAbsent(key, id) != null) {
+            throw new DuplicateEmailException(email);
+        }
+        User user = new User(id, name, email, 1);
+        UserLog log = this.log;
+        long position;
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            byId.put(id, user);
+            size.incrementAndGet();
+            try {
+                position = log != null ? log.appendPut(user) : 0;
+            } catch (IOException | RuntimeException e) {
+                byId.remove(id);
+                size.decrementAndGet();
+                idsByEmail.remove(key, id);
+                throw e;
+            }
+        } finally {
+            stripe.unlock();
+        }
+        awaitDurable(log, position);
+        return user;
+    }
+
+    /**
+     * Cập nhật name/email của user.
+     * @return bản ghi mới, hoặc null nếu user không tồn tại
+     */
+    User update(long id, String name, String email) throws DuplicateEmailException, IOException {
+        validate(name, email);
+        String key = normalize(email);
+        UserLog log = this.log;
+        User updated;
+        long position;
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            User current = byId.get(id);
+            if (current == null) {
+                return null;
+            }
+            String oldKey = normalize(current.email);
+            boolean emailChanged = !oldKey.equals(key);
+            if (emailChanged) {
+                Long owner = idsByEmail.putIfAbsent(key, id);
+                if (owner != null && owner != id) {
+                    throw new DuplicateEmailException(email);
+                }
+            }
+            updated = new User(id, name, email, current.version + 1);
+            byId.put(id, updated);
+            try {
+                position = log != null ? log.appendPut(updated) : 0;
+            } catch (IOException | RuntimeException e) {
+                byId.put(id, current);
+                if (emailChanged) {
+                    idsByEmail.remove(key, id);
+                }
+                throw e;
+            }
+            if (emailChanged) {
+                idsByEmail.remove(oldKey, id);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        awaitDurable(log, position);
+        return updated;
+    }
+
+    /** @return bản ghi đã xóa, hoặc null nếu không tồn tại */
+    User delete(long id) throws IOException {
+        UserLog log = this.log;
+        User removed;
+        long position = 0;
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            removed = byId.remove(id);
+            if (removed != null) {
+                try {
+                    position = log != null ? log.appendDelete(removed) : 0;
+                } catch (IOException | RuntimeException e) {
+                    byId.put(id, removed);
+                    throw e;
+                }
+                idsByEmail.remove(normalize(removed.email), id);
+                size.decrementAndGet();
+            }
+        } finally {
+            stripe.unlock();
+        }
+        awaitDurable(log, position);
+        return removed;
+    }
+
+    /**
+     * Thêm {@code count} user sinh tự động (email user{id}@example.com) để load-test.
+     * Khi có log, chỉ chờ fsync một lần ở cuối.
+     */
+    void seed(int count) throws IOException {
+        UserLog log = this.log;
+        long position = 0;
+        for (int i = 0; i < count; i++) {
+            long id = nextId.getAndIncrement();
+            String name = FAMILY_NAMES[(int) (id % FAMILY_NAMES.length)] + " "
+                + GIVEN_NAMES[(int) ((id / FAMILY_NAMES.length) % GIVEN_NAMES.length)];
+            String email = "user" + id + "@example.com";
+            if (idsByEmail.putIfAbsent(email, id) == null) {
+                User user = new User(id, name, email, 1);
+                ReentrantLock stripe = stripe(id);
+                stripe.lock();
+                try {
+                    byId.put(id, user);
+                    size.incrementAndGet();
+                    if (log != null) {
+                        position = log.appendPut(user);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    byId.remove(id);
+                    size.decrementAndGet();
+                    idsByEmail.remove(email, id);
+                    throw e;
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+        awaitDurable(log, position);
+    }
+
+    long nextId() {
+        return nextId.get();
+    }
+
+    /** Xóa toàn bộ dữ liệu (trước khi khôi phục từ log). */
+    void clear() {
+        byId.clear();
+        idsByEmail.clear();
+        size.set(0);
+        nextId.set(1);
+    }
+
+    /**
+     * Áp dụng một bản ghi khi khôi phục: chỉ thay khi version mới hơn, vì snapshot được chụp
+     * trong lúc vẫn có ghi nên có thể đã chứa bản mới hơn record trong log.
+     */
+    void restore(User user) {
+        User current = byId.put(user.id, user);
+        if (current != null && current.version > user.version) {
+            byId.put(user.id, current);
+            return;
+        }
+        if (current == null) {
+            size.incrementAndGet();
+        } else {
+            idsByEmail.remove(normalize(current.email), user.id);
+        }
+        idsByEmail.put(normalize(user.email), user.id);
+        nextId.accumulateAndGet(user.id + 1, Math::max);
+    }
+
+    void restoreDelete(long id) {
+        User removed = byId.remove(id);
+        if (removed != null) {
+            idsByEmail.remove(normalize(removed.email), id);
+            size.decrementAndGet();
+        }
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    void advanceNextId(long next) {
+        nextId.accumulateAndGet(next, Math::max);
+    }
+
+    private ReentrantLock stripe(long id) {
+        return stripes[(int) (id & (stripes.length - 1))];
+    }
+
+    private static void awaitDurable(UserLog log, long position) throws IOException {
+        if (log != null && position > 0) {
+            log.awaitDurable(position);
+        }
+    }
+
+    private static void validate(String name, String email) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (email == null || email.indexOf('@') <= 0 || email.indexOf('@') == email.length() - 1) {
+            throw new IllegalArgumentException("email is invalid");
+        }
+        // Kiểm tra trước khi publish: append chỉ còn lỗi khi log đóng hoặc hỏng
+        if (!fitsLog(name)) {
+            throw new IllegalArgumentException("name is too long");
+        }
+        if (!fitsLog(email)) {
+            throw new IllegalArgumentException("email is too long");
+        }
+    }
+
+    private static boolean fitsLog(String value) {
+        // Mỗi char tối đa 3 byte UTF-8: chuỗi ngắn chắc chắn vừa, không cần encode
+        return value.length() <= UserLog.MAX_STRING_BYTES / 3
+            || value.getBytes(StandardCharsets.UTF_8).length <= UserLog.MAX_STRING_BYTES;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,302 @@
+package com.httpbrowser;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Users Handler - REST API cho {@link UserStore}.
+ *
+ * <pre>
+ * GET    /api/users?cursor=ID&amp;limit=N   trang user có id &gt; cursor (mặc định {@value #DEFAULT_PAGE_SIZE}, tối đa {@value #MAX_PAGE_SIZE})
+ * GET    /api/users?email=...             tìm theo email
+ * GET    /api/users/{id}
+ * POST   /api/users                       {"name": "...", "email": "..."} -&gt; 201 + Location
+ * PUT    /api/users/{id}                  {"name": "...", "email": "..."}
+ * DELETE /api/users/{id}                  -&gt; 204
+ * </pre>
+ * Response trang có {@code nextCursor} (null ở trang cuối); email trùng trả 409.
+ * JSON được ghi thẳng vào response bằng {@link JsonWriter}, nên trang lớn được stream
+ * chunked thay vì dựng cả chuỗi trong bộ nhớ.
+ */
+final class UsersHandler implements HttpHandler {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 100_000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final UserStore store;
+    private final String contextPath;
+
+    UsersHandler(UserStore store, String contextPath) {
+        this.store = store;
+        this.contextPath = contextPath;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String rest = exchange.getRequestURI().getPath().substring(contextPath.length());
+        while (rest.startsWith("/")) {
+            rest = rest.substring(1);
+        }
+        try {
+            if (rest.isEmpty()) {
+                switch (method) {
+                    case "GET" -> list(exchange);
+                    case "POST" -> create(exchange);
+                    default -> methodNotAllowed(exchange, "GET, POST");
+                }
+                return;
+            }
+            long id;
+            try {
+                id = Long.parseLong(rest);
+            } catch (NumberFormatException e) {
+                sendError(exchange, 404, "No such user: " + rest);
+                return;
+            }
+            switch (method) {
+                case "GET" -> get(exchange, id);
+                case "PUT" -> update(exchange, id);
+                case "DELETE" -> delete(exchange, id);
+                default -> methodNotAllowed(exchange, "GET, PUT, DELETE");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (UserStore.DuplicateEmailException e) {
+            sendError(exchange, 409, e.getMessage());
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, String> query = WebServer.queryParameters(exchange.getRequestURI());
+        String email = query.get("email");
+        if (email != null) {
+            UserStore.User user = store.findByEmail(email);
+            if (user == null) {
+                sendError(exchange, 404, "No user with email: " + email);
+            } else {
+                sendUser(exchange, 200, user);
+            }
+            return;
+        }
+        long cursor = parseLong(query.get("cursor"), 0, "cursor");
+        int limit = (int) parseLong(query.get("limit"), DEFAULT_PAGE_SIZE, "limit");
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        noStore(exchange);
+        try (JsonWriter json = JsonWriter.forResponse(exchange, 200)) {
+            json.beginObject().name("users").beginArray();
+            int written = 0;
+            long lastId = -1;
+            boolean more = false;
+            for (UserStore.User user : store.after(cursor)) {
+                if (written == limit) {
+                    more = true;
+                    break;
+                }
+                writeUser(json, user);
+                lastId = user.id;
+                written++;
+            }
+            json.endArray().field("total", store.size()).name("nextCursor");
+            if (more) {
+                json.value(lastId);
+            } else {
+                json.nullValue();
+            }
+            json.endObject();
+        }
+    }
+
+    private void get(HttpExchange exchange, long id) throws IOException {
+        UserStore.User user = store.get(id);
+        if (user == null) {
+            sendError(exchange, 404, "No such user: " + id);
+            return;
+        }
+        sendUser(exchange, 200, user);
+    }
+
+    private void create(HttpExchange exchange) throws IOException, UserStore.DuplicateEmailException {
+        Map<String, String> fields = readObject(exchange);
+        UserStore.User user = store.create(fields.get("name"), fields.get("email"));
+        exchange.getResponseHeaders().set("Location", contextPath + "/" + user.id);
+        sendUser(exchange, 201, user);
+    }
+
+    private void update(HttpExchange exchange, long id) throws IOException, UserStore.DuplicateEmailException {
+        Map<String, String> fields = readObject(exchange);
+        UserStore.User user = store.update(id, fields.get("name"), fields.get("email"));
+        if (user == null) {
+            sendError(exchange, 404, "No such user: " + id);
+            return;
+        }
+        sendUser(exchange, 200, user);
+    }
+
+    private void delete(HttpExchange exchange, long id) throws IOException {
+        if (store.delete(id) == null) {
+            sendError(exchange, 404, "No such user: " + id);
+            return;
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private static void writeUser(JsonWriter json, UserStore.User user) throws IOException {
+        json.beginObject()
+            .field("id", user.id)
+            .field("name", user.name)
+            .field("email", user.email)
+            .field("version", user.version)
+            .endObject();
+    }
+
+    /** Đọc body (tối đa 64 KB) là một object JSON phẳng chỉ gồm các giá trị string. */
+    private static Map<String, String> readObject(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("body exceeds " + MAX_BODY_BYTES + " bytes");
+        }
+        return parseObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse {@code {"key": "value", ...}}; chỉ hỗ trợ value là string (hoặc null).
+     * @throws IllegalArgumentException nếu không đúng cú pháp
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipWhitespace(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = parseString(text, pos);
+                expect(text, pos, ':');
+                String value;
+                if (text.startsWith("null", pos[0])) {
+                    pos[0] += 4;
+                    value = null;
+                } else {
+                    value = parseString(text, pos);
+                }
+                fields.put(key, value);
+                char next = peek(text, pos);
+                pos[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("invalid JSON at offset " + (pos[0] - 1));
+                }
+            }
+        }
+        if (skipWhitespace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("unexpected data after JSON object");
+        }
+        return fields;
+    }
+
+    private static String parseString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder value = new StringBuilder();
+        int i = pos[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                pos[0] = skipWhitespace(text, i);
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+            char escape = text.charAt(i++);
+            switch (escape) {
+                case '"', '\\', '/' -> value.append(escape);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("invalid \\u escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("invalid \\u escape");
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("invalid escape \\" + escape);
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos) != expected) {
+            throw new IllegalArgumentException("expected '" + expected + "' at offset " + pos[0]);
+        }
+        pos[0] = skipWhitespace(text, pos[0] + 1);
+    }
+
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipWhitespace(text, pos[0]);
+        return pos[0] < text.length() ? text.charAt(pos[0]) : '\0';
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long parseLong(String value, long defaultValue, String name) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static void methodNotAllowed(HttpExchange exchange, String allow) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allow);
+        sendError(exchange, 405, "Method Not Allowed");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        noStore(exchange);
+        try (JsonWriter json = JsonWriter.forResponse(exchange, status)) {
+            json.beginObject().field("error", message).endObject();
+        }
+    }
+
+    private static void sendUser(HttpExchange exchange, int status, UserStore.User user) throws IOException {
+        noStore(exchange);
+        try (JsonWriter json = JsonWriter.forResponse(exchange, status)) {
+            writeUser(json, user);
+        }
+    }
+
+    private static void noStore(HttpExchange exchange) {
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+    }
+}
@@ -2,6 +2,7 @@ package com.httpbrowser;
 
 import javax.swing.*;
 import javax.swing.event.*;
+import javax.swing.text.Document;
 import javax.swing.text.html.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -9,8 +10,8 @@ import java.net.*;
 import java.util.*;
 import java.util.List;
 import java.io.*;
-import javax.net.ssl.*;
-import java.security.cert.X509Certificate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Web Browser - Full-featured web browser với navigation, history, bookmarks
@@ -40,9 +41,19 @@ public class WebBrowser extends JPanel {
     private JComboBox<Bookmark> bookmarksCombo;
     private DefaultComboBoxModel<Bookmark> bookmarksModel;
     
-    // Loading state
-    private boolean isLoading = false;
-    private SwingWorker<String, Void> currentLoader;
+    // Loading state (chỉ dùng trên EDT): mỗi lần tải có generation riêng, kết quả của
+    // generation cũ đến muộn thì bị bỏ
+    private static final String PAGE_ACCEPT =
+        "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8";
+    private transient CompletableFuture<HttpTransport.Response> currentLoad;
+    private long loadGeneration;
+    
+    // Back/forward cache: ảnh chụp các trang vừa rời khỏi (chỉ trang đã render thành công)
+    private final transient BackForwardCache pageCache = new BackForwardCache(16, 4L << 20);
+    private String displayedUrl;
+    private String displayedHtml;
+    private boolean paneInCache;
+    private JScrollPane pageScroll;
     
     public WebBrowser() {
         backHistory = new Stack<>();
@@ -50,10 +61,29 @@ public class WebBrowser extends JPanel {
         bookmarks = new ArrayList<>();
         bookmarksModel = new DefaultComboBoxModel<>();
         
-        trustAllCertificates(); // Enable HTTPS support
         initializeUI();
         loadDefaultBookmarks();
-        navigateTo(homeUrl);
+        navigateHomeWhenShown();
+    }
+    
+    /**
+     * Trang chủ chỉ được tải khi panel thực sự hiện lên màn hình (sau khi cửa sổ đã vẽ), để
+     * việc tạo tab không phải chờ mạng. Nếu đã điều hướng trước đó thì bỏ qua.
+     */
+    private void navigateHomeWhenShown() {
+        addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                    removeHierarchyListener(this);
+                    SwingUtilities.invokeLater(() -> {
+                        if (currentUrl == null) {
+                            navigateTo(homeUrl);
+                        }
+                    });
+                }
+            }
+        });
     }
     
     private void initializeUI() {
@@ -65,15 +95,10 @@ public class WebBrowser extends JPanel {
         add(navPanel, BorderLayout.NORTH);
         
         // Center - Browser pane with enhanced rendering
-        browserPane = new JEditorPane();
-        browserPane.setEditable(false);
-        
-        // Use HTMLEditorKit for better HTML support
-        HTMLEditorKit kit = new HTMLEditorKit();
-        browserPane.setEditorKit(kit);
+        browserPane = createBrowserPane();
         
-        // Add custom CSS for better rendering
-        StyleSheet styleSheet = kit.getStyleSheet();
+        // Add custom CSS for better rendering (StyleSheet mặc định dùng chung cho mọi HTMLEditorKit)
+        StyleSheet styleSheet = ((HTMLEditorKit) browserPane.getEditorKit()).getStyleSheet();
         styleSheet.addRule("body { font-family: 'Segoe UI', Arial, sans-serif; font-size: 14px; margin: 10px; background-color: white; }");
         styleSheet.addRule("h1 { font-size: 32px; font-weight: bold; margin: 20px 0 10px 0; color: #202124; }");
         styleSheet.addRule("h2 { font-size: 24px; font-weight: bold; margin: 18px 0 10px 0; color: #202124; }");
@@ -94,10 +119,29 @@ public class WebBrowser extends JPanel {
         styleSheet.addRule("div { margin: 5px 0; }");
         styleSheet.addRule(".container { max-width: 1200px; margin: 0 auto; }");
         
-        browserPane.setContentType("text/html; charset=UTF-8");
+        pageScroll = new JScrollPane(browserPane);
+        pageScroll.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
+        add(pageScroll, BorderLayout.CENTER);
+        
+        // Bottom - Status bar
+        JPanel statusPanel = createStatusPanel();
+        add(statusPanel, BorderLayout.SOUTH);
+    }
+    
+    /**
+     * Mỗi trang được hiển thị trong một JEditorPane riêng khi pane trước đó đã vào back/forward
+     * cache (xem {@link #freshPane()}).
+     */
+    private JEditorPane createBrowserPane() {
+        JEditorPane pane = new JEditorPane();
+        pane.setEditable(false);
+        
+        // Use HTMLEditorKit for better HTML support
+        pane.setEditorKit(new HTMLEditorKit());
+        pane.setContentType("text/html; charset=UTF-8");
         
         // Handle hyperlink clicks
-        browserPane.addHyperlinkListener(new HyperlinkListener() {
+        pane.addHyperlinkListener(new HyperlinkListener() {
             @Override
             public void hyperlinkUpdate(HyperlinkEvent e) {
                 if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
@@ -108,14 +152,21 @@ public class WebBrowser extends JPanel {
                 }
             }
         });
-        
-        JScrollPane scrollPane = new JScrollPane(browserPane);
-        scrollPane.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
-        add(scrollPane, BorderLayout.CENTER);
-        
-        // Bottom - Status bar
-        JPanel statusPanel = createStatusPanel();
-        add(statusPanel, BorderLayout.SOUTH);
+        return pane;
+    }
+    
+    /** Pane để hiển thị nội dung mới: không ghi đè pane đang được back/forward cache giữ. */
+    private JEditorPane freshPane() {
+        if (paneInCache) {
+            usePane(createBrowserPane());
+            paneInCache = false;
+        }
+        return browserPane;
+    }
+    
+    private void usePane(JEditorPane pane) {
+        browserPane = pane;
+        pageScroll.setViewportView(pane);
     }
     
     private JPanel createNavigationPanel() {
@@ -268,6 +319,7 @@ public class WebBrowser extends JPanel {
         
         // Save current URL to back history
         if (currentUrl != null && !currentUrl.equals(url)) {
+            rememberCurrentPage();
             backHistory.push(currentUrl);
             forwardHistory.clear();
             updateNavigationButtons();
@@ -279,161 +331,129 @@ public class WebBrowser extends JPanel {
     }
     
     private void loadPage(String urlString) {
-        if (isLoading && currentLoader != null) {
-            currentLoader.cancel(true);
-        }
+        loadPage(urlString, false);
+    }
+    
+    /** @param revalidate true khi Refresh: bỏ qua bản cache còn tươi, hỏi lại server (max-age=0) */
+    private void loadPage(String urlString, boolean revalidate) {
+        // Lần tải trước (nếu còn) bị hủy ngay: connection đóng, thread nền được trả lại
+        cancelCurrentLoad();
+        long generation = ++loadGeneration;
         
-        isLoading = true;
         stopButton.setEnabled(true);
         progressBar.setVisible(true);
         progressBar.setIndeterminate(true);
         statusLabel.setText("⏳ Loading: " + urlString);
         
-        currentLoader = new SwingWorker<String, Void>() {
-            private long startTime;
-            private URL pageUrl;
-            
-            @Override
-            protected String doInBackground() throws Exception {
-                startTime = System.currentTimeMillis();
-                URI uri = new URI(urlString);
-                pageUrl = uri.toURL();
-                return fetchPage(urlString);
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<HttpTransport.Response> load;
+        try {
+            HttpTransport.Request request = HttpTransport.pageRequest(urlString, PAGE_ACCEPT);
+            if (revalidate) {
+                request.header("Cache-Control", "max-age=0");
             }
-            
-            @Override
-            protected void done() {
-                isLoading = false;
-                stopButton.setEnabled(false);
-                progressBar.setIndeterminate(false);
-                progressBar.setVisible(false);
-                
-                try {
-                    if (!isCancelled()) {
-                        String content = get();
-                        long loadTime = System.currentTimeMillis() - startTime;
-                        
-                        // Debug: Check if content is empty
-                        if (content == null || content.trim().isEmpty()) {
-                            browserPane.setText("<html><body><h1>Error</h1><p>Received empty response from server.</p></body></html>");
-                            statusLabel.setText("❌ Empty response");
-                            return;
-                        }
-                        
-                        // Set base URL for proper resource loading (images, CSS, etc.)
-                        try {
-                            if (pageUrl != null) {
-                                ((HTMLDocument) browserPane.getDocument()).setBase(pageUrl);
-                            }
-                        } catch (Exception e) {
-                            // Ignore if document is not HTMLDocument
-                        }
-                        
-                        // Try to render HTML
-                        try {
-                            // First try: Clean and prepare HTML for better rendering
-                            String cleanHtml = prepareHtmlForRendering(content, urlString);
-                            
-                            // Set content type first
-                            browserPane.setContentType("text/html; charset=UTF-8");
-                            
-                            // Try to set the cleaned HTML
-                            if (cleanHtml != null && !cleanHtml.trim().isEmpty()) {
-                                browserPane.setText(cleanHtml);
-                                browserPane.setCaretPosition(0);
-                            } else {
-                                // Fallback: Use original content
-                                browserPane.setText(content);
-                                browserPane.setCaretPosition(0);
-                            }
-                            
-                            statusLabel.setText(String.format("✅ Done - %dms - %d bytes", 
-                                              loadTime, content.length()));
-                        } catch (Exception renderEx) {
-                            // Last resort: Show raw HTML or error
-                            try {
-                                browserPane.setContentType("text/plain");
-                                browserPane.setText("Failed to render HTML. Showing raw content:\n\n" + 
-                                                  content.substring(0, Math.min(content.length(), 10000)));
-                            } catch (Exception e2) {
-                                browserPane.setText("Error rendering page: " + renderEx.getMessage());
-                            }
-                            statusLabel.setText("⚠️ Rendering error - showing raw content");
-                        }
-                    } else {
-                        statusLabel.setText("⏹ Stopped");
-                    }
-                } catch (Exception e) {
-                    String errorHtml = generateErrorPage(urlString, e);
-                    browserPane.setContentType("text/html");
-                    browserPane.setText(errorHtml);
-                    statusLabel.setText("❌ Error: " + e.getMessage());
+            load = HttpTransport.shared().sendAsync(request);
+        } catch (IOException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        currentLoad = load;
+        load.whenComplete((response, error) -> SwingUtilities.invokeLater(() -> {
+            // Kết quả của lần tải đã bị Stop hoặc bị điều hướng khác thay thế: bỏ qua
+            if (generation != loadGeneration) {
+                return;
+            }
+            currentLoad = null;
+            stopButton.setEnabled(false);
+            progressBar.setIndeterminate(false);
+            progressBar.setVisible(false);
+            try {
+                if (error != null) {
+                    throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
                 }
+                showPage(urlString, response, System.currentTimeMillis() - startTime);
+            } catch (Throwable e) {
+                displayedUrl = null;
+                freshPane();
+                String errorHtml = generateErrorPage(urlString, e);
+                browserPane.setContentType("text/html");
+                browserPane.setText(errorHtml);
+                statusLabel.setText("❌ Error: " + e.getMessage());
             }
-        };
-        
-        currentLoader.execute();
+        }));
+    }
+    
+    private void cancelCurrentLoad() {
+        if (currentLoad != null) {
+            currentLoad.cancel(true);
+            currentLoad = null;
+        }
     }
     
-    private String fetchPage(String urlString) throws Exception {
-        URI uri = new URI(urlString);
-        URL url = uri.toURL();
-        
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        
-        // Set headers like a real browser
-        connection.setRequestProperty("User-Agent", 
-            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-        connection.setRequestProperty("Accept", 
-            "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
-        connection.setRequestProperty("Accept-Language", "en-US,en;q=0.9,vi;q=0.8");
-        connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-        connection.setRequestProperty("Connection", "keep-alive");
-        connection.setRequestProperty("Upgrade-Insecure-Requests", "1");
-        connection.setConnectTimeout(20000);
-        connection.setReadTimeout(20000);
-        connection.setInstanceFollowRedirects(true);
-        
-        int responseCode = connection.getResponseCode();
-        System.out.println("Response code: " + responseCode); // Debug
+    private void showPage(String urlString, HttpTransport.Response response, long loadTime) throws IOException {
+        String content = pageContent(response);
+        displayedUrl = null;
         
-        if (responseCode >= 200 && responseCode < 400) {
-            InputStream inputStream = connection.getInputStream();
+        // Try to render HTML
+        try {
+            // First try: Clean and prepare HTML for better rendering
+            String cleanHtml = prepareHtmlForRendering(content, urlString);
+            String html = cleanHtml != null && !cleanHtml.trim().isEmpty() ? cleanHtml : content;
             
-            // Handle GZIP
-            String encoding = connection.getContentEncoding();
-            if ("gzip".equalsIgnoreCase(encoding)) {
-                inputStream = new java.util.zip.GZIPInputStream(inputStream);
-            }
+            // Set content type first
+            freshPane().setContentType("text/html; charset=UTF-8");
             
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(inputStream, "UTF-8"))) {
-                String line;
-                int lineCount = 0;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                    lineCount++;
-                }
-                System.out.println("Fetched " + lineCount + " lines, " + content.length() + " bytes"); // Debug
+            // Set base URL for proper resource loading (images, CSS, etc.)
+            try {
+                ((HTMLDocument) browserPane.getDocument()).setBase(response.uri.toURL());
+            } catch (Exception e) {
+                // Ignore if document is not HTMLDocument
             }
+            browserPane.setText(html);
+            browserPane.setCaretPosition(0);
+            displayedUrl = urlString;
+            displayedHtml = html;
             
-            connection.disconnect();
-            
-            String result = content.toString();
+            String compression = response.compressionSummary();
+            statusLabel.setText(String.format("✅ Done - %s - %dms - %d bytes%s%s", 
+                              response.protocol(), loadTime, content.length(), cacheNote(response),
+                              compression != null ? " - 🗜 " + compression : ""));
+        } catch (Exception renderEx) {
+            // Last resort: Show raw HTML or error
+            try {
+                browserPane.setContentType("text/plain");
+                browserPane.setText("Failed to render HTML. Showing raw content:\n\n" + 
+                                  content.substring(0, Math.min(content.length(), 10000)));
+            } catch (Exception e2) {
+                browserPane.setText("Error rendering page: " + renderEx.getMessage());
+            }
+            statusLabel.setText("⚠️ Rendering error - showing raw content");
+        }
+    }
+    
+    private static String cacheNote(HttpTransport.Response response) {
+        return switch (response.cacheStatus) {
+            case HIT -> " (💾 cache)";
+            case REVALIDATED -> " (💾 cache, đã xác nhận lại)";
+            default -> "";
+        };
+    }
+    
+    private String pageContent(HttpTransport.Response response) throws IOException {
+        int responseCode = response.statusCode;
+        
+        if (responseCode >= 200 && responseCode < 400) {
+            String result = response.text();
             if (result.trim().isEmpty()) {
                 throw new IOException("Server returned empty content");
             }
             
             return result;
         } else {
-            connection.disconnect();
-            throw new IOException("HTTP Error: " + responseCode + " " + connection.getResponseMessage());
+            throw new IOException("HTTP Error: " + responseCode + " " + HttpTransport.reasonPhrase(responseCode));
         }
     }
     
-    private String generateErrorPage(String url, Exception e) {
+    private String generateErrorPage(String url, Throwable e) {
         return "<!DOCTYPE html>" +
                "<html>" +
                "<head>" +
@@ -481,36 +501,91 @@ public class WebBrowser extends JPanel {
     
     private void goBack() {
         if (!backHistory.isEmpty()) {
+            rememberCurrentPage();
             forwardHistory.push(currentUrl);
             String url = backHistory.pop();
             currentUrl = url;
             addressBar.setText(url);
-            loadPage(url);
+            if (!restoreFromCache(url)) {
+                loadPage(url);
+            }
             updateNavigationButtons();
         }
     }
     
     private void goForward() {
         if (!forwardHistory.isEmpty()) {
+            rememberCurrentPage();
             backHistory.push(currentUrl);
             String url = forwardHistory.pop();
             currentUrl = url;
             addressBar.setText(url);
-            loadPage(url);
+            if (!restoreFromCache(url)) {
+                loadPage(url);
+            }
             updateNavigationButtons();
         }
     }
     
+    /** Chụp trang đang hiển thị (nếu đúng là trang của currentUrl) trước khi rời khỏi nó. */
+    private void rememberCurrentPage() {
+        if (displayedUrl == null || !displayedUrl.equals(currentUrl)) {
+            return;
+        }
+        Document document = browserPane.getDocument();
+        URL base = document instanceof HTMLDocument ? ((HTMLDocument) document).getBase() : null;
+        pageCache.put(displayedUrl, new BackForwardCache.Snapshot(displayedHtml, base, browserPane,
+            pageScroll.getViewport().getViewPosition()));
+        paneInCache = true;
+    }
+    
+    /**
+     * Hiện lại trang từ back/forward cache: gắn lại pane cũ (Document và view đã dựng sẵn) nếu GC
+     * chưa thu hồi, nếu không thì dựng lại từ HTML đã xử lý. Không ra mạng.
+     * @return false nếu trang không có trong cache
+     */
+    private boolean restoreFromCache(String url) {
+        BackForwardCache.Snapshot snapshot = pageCache.get(url);
+        if (snapshot == null) {
+            return false;
+        }
+        // Lần tải đang chạy (nếu có) không còn là trang hiện tại
+        cancelCurrentLoad();
+        loadGeneration++;
+        stopButton.setEnabled(false);
+        progressBar.setIndeterminate(false);
+        progressBar.setVisible(false);
+        
+        long started = System.nanoTime();
+        JEditorPane pane = snapshot.pane.get();
+        if (pane != null) {
+            usePane(pane);
+            paneInCache = true;
+        } else {
+            freshPane().setContentType("text/html; charset=UTF-8");
+            if (snapshot.base != null) {
+                ((HTMLDocument) browserPane.getDocument()).setBase(snapshot.base);
+            }
+            browserPane.setText(snapshot.html);
+        }
+        displayedUrl = url;
+        displayedHtml = snapshot.html;
+        SwingUtilities.invokeLater(() -> pageScroll.getViewport().setViewPosition(snapshot.viewPosition));
+        statusLabel.setText(String.format("⚡ Back/forward cache - %.1f ms (%s)",
+            (System.nanoTime() - started) / 1e6, pageCache.stats()));
+        return true;
+    }
+    
     private void refresh() {
         if (currentUrl != null) {
-            loadPage(currentUrl);
+            loadPage(currentUrl, true);
         }
     }
     
     private void stopLoading() {
-        if (isLoading && currentLoader != null) {
-            currentLoader.cancel(true);
-            isLoading = false;
+        if (currentLoad != null) {
+            cancelCurrentLoad();
+            loadGeneration++;
             stopButton.setEnabled(false);
             progressBar.setVisible(false);
             statusLabel.setText("⏹ Stopped");
@@ -522,40 +597,6 @@ public class WebBrowser extends JPanel {
         forwardButton.setEnabled(!forwardHistory.isEmpty());
     }
     
-    private void trustAllCertificates() {
-        try {
-            // Create a trust manager that accepts all certificates
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return null;
-                    }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                    }
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                    }
-                }
-            };
-            
-            // Install the all-trusting trust manager
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-            
-            // Create all-trusting hostname verifier
-            HostnameVerifier allHostsValid = new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
-            };
-            
-            // Install the all-trusting hostname verifier
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-        } catch (Exception e) {
-            System.err.println("Failed to setup SSL trust: " + e.getMessage());
-        }
-    }
-    
     private String prepareHtmlForRendering(String html, String baseUrl) {
         if (html == null || html.trim().isEmpty()) {
             return "<html><body><p>Empty page</p></body></html>";
@@ -4,10 +4,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.*;
 import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.List;
-import javax.net.ssl.*;
-import java.security.cert.X509Certificate;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.awt.datatransfer.*;
@@ -26,6 +26,7 @@ public class WebClient {
     private JButton saveButton;
     private JButton copyButton;
     private JTextArea responseArea;
+    private LargeTextViewer bodyViewer;
     private JTextArea headerArea;
     private JEditorPane htmlPane;
     private JLabel statusLabel;
@@ -64,7 +65,6 @@ public class WebClient {
         historyModel = new DefaultComboBoxModel<>();
         cookieStore = new HashMap<>();
         initializeUI();
-        trustAllCertificates(); // For HTTPS testing
         loadPopularUrls();
     }
     
@@ -87,6 +87,10 @@ public class WebClient {
         JPanel responseInfoPanel = createResponseInfoPanel();
         tabbedPane.addTab("📊 Thông tin phản hồi", responseInfoPanel);
         
+        // Raw Body Tab - body lớn được xem trực tiếp từ file tạm, không nạp vào JTextArea
+        bodyViewer = new LargeTextViewer();
+        tabbedPane.addTab("📜 Body", bodyViewer);
+        
         // Headers Tab
         JPanel headersPanel = createHeadersPanel();
         tabbedPane.addTab("📋 Headers", headersPanel);
@@ -315,6 +319,7 @@ public class WebClient {
     }
     
     private void clearAll() {
+        discardBody(lastResponse);
         responseArea.setText("");
         headerArea.setText("");
         htmlPane.setText("");
@@ -325,7 +330,7 @@ public class WebClient {
     }
     
     private void saveResponse() {
-        if (lastResponse == null || lastResponse.body == null) {
+        if (lastResponse == null || (lastResponse.body == null && lastResponse.bodyFile == null)) {
             JOptionPane.showMessageDialog(mainPanel, 
                 "Không có response để lưu!", "Thông báo", JOptionPane.WARNING_MESSAGE);
             return;
@@ -348,8 +353,13 @@ public class WebClient {
         if (result == JFileChooser.APPROVE_OPTION) {
             try {
                 java.io.File file = fileChooser.getSelectedFile();
-                try (java.io.FileWriter writer = new java.io.FileWriter(file)) {
-                    writer.write(lastResponse.body);
+                if (lastResponse.bodyFile != null) {
+                    // Body lớn: chép nguyên byte từ file tạm, không qua heap
+                    Files.copy(lastResponse.bodyFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    try (java.io.FileWriter writer = new java.io.FileWriter(file)) {
+                        writer.write(lastResponse.body);
+                    }
                 }
                 JOptionPane.showMessageDialog(mainPanel, 
                     "✅ Đã lưu response vào:\n" + file.getAbsolutePath(), 
@@ -363,11 +373,17 @@ public class WebClient {
     }
     
     private void copyToClipboard() {
-        if (lastResponse == null || lastResponse.body == null) {
+        if (lastResponse == null || (lastResponse.body == null && lastResponse.bodyFile == null)) {
             JOptionPane.showMessageDialog(mainPanel, 
                 "Không có response để copy!", "Thông báo", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (lastResponse.bodyFile != null) {
+            JOptionPane.showMessageDialog(mainPanel, 
+                "Body quá lớn (" + formatBytes(lastResponse.bodyLength) + ") để copy vào clipboard.\n" +
+                "Dùng 💾 Save để lưu ra file.", "Thông báo", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         
         // Show dialog to choose what to copy
         Object[] options = {"Response Body", "Headers", "All (Body + Headers)", "Cancel"};
@@ -483,8 +499,8 @@ public class WebClient {
                     statusLabel.setText(statusMsg);
                     responseTimeLabel.setText(String.format("⏱️ Time: %dms", responseTime));
                     
-                    if (response.body != null) {
-                        responseSizeLabel.setText("📦 Size: " + formatBytes(response.body.length()));
+                    if (response.body != null || response.bodyFile != null) {
+                        responseSizeLabel.setText("📦 Size: " + formatBytes(response.bodyLength));
                     }
                     
                 } catch (Exception e) {
@@ -505,68 +521,63 @@ public class WebClient {
     
     private HttpResponse executeRequest(String urlString, String method) {
         HttpResponse response = new HttpResponse();
-        HttpURLConnection connection = null;
         
         try {
-            URI uri = new URI(urlString);
-            URL url = uri.toURL();
-            connection = (HttpURLConnection) url.openConnection();
-            
-            // Set request method
-            connection.setRequestMethod(method);
+            HttpTransport.Request request = new HttpTransport.Request(method, HttpTransport.toUri(urlString));
             
             // Get timeout from spinner (in seconds)
             int timeoutSeconds = (Integer) timeoutSpinner.getValue();
-            int timeoutMs = timeoutSeconds * 1000;
+            request.timeout = Duration.ofSeconds(timeoutSeconds);
             
-            // Set default headers
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) SimpleHttpBrowser/3.2");
-            connection.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
-            connection.setRequestProperty("Accept-Language", "en-US,en;q=0.9,vi;q=0.8");
-            connection.setRequestProperty("Accept-Encoding", "gzip, deflate, br");
-            connection.setRequestProperty("Connection", "keep-alive");
-            connection.setConnectTimeout(timeoutMs);
-            connection.setReadTimeout(timeoutMs);
+            // Set default headers (Accept-Encoding do transport đặt: chỉ những gì giải nén được)
+            request.header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) SimpleHttpBrowser/3.2");
+            request.header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
+            request.header("Accept-Language", "en-US,en;q=0.9,vi;q=0.8");
             
             // Follow redirects
-            connection.setInstanceFollowRedirects(followRedirectsCheckBox.isSelected());
+            request.followRedirects = followRedirectsCheckBox.isSelected();
+            
+            // Body lớn được ghi ra file tạm thay vì giữ cả String trên heap
+            request.spillThreshold = HttpTransport.SPILL_BYTES;
             
             // Add cookies if enabled
             if (useCookiesCheckBox.isSelected()) {
                 String cookieHeader = getCookiesForUrl(urlString);
                 if (!cookieHeader.isEmpty()) {
-                    connection.setRequestProperty("Cookie", cookieHeader);
+                    request.header("Cookie", cookieHeader);
                 }
             }
             
             // Parse and set custom headers
-            parseAndSetCustomHeaders(connection);
+            parseAndSetCustomHeaders(request);
             
             // For POST, PUT, DELETE requests
             if ("POST".equals(method) || "PUT".equals(method) || "DELETE".equals(method)) {
-                connection.setDoOutput(true);
-                
                 // Set content type if not already set by custom headers
-                if (connection.getRequestProperty("Content-Type") == null) {
-                    connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+                if (request.header("Content-Type") == null) {
+                    request.header("Content-Type", "application/json; charset=UTF-8");
                 }
                 
                 String postData = postDataArea.getText().trim();
                 if (!postData.isEmpty() && !postData.startsWith("#")) {
-                    try (OutputStream os = connection.getOutputStream()) {
-                        byte[] input = postData.getBytes("UTF-8");
-                        os.write(input, 0, input.length);
-                    }
+                    request.body = postData.getBytes("UTF-8");
                 }
             }
             
+            HttpTransport.Response result = HttpTransport.shared().send(request);
+            
             // Get response code and message
-            response.statusCode = connection.getResponseCode();
-            response.statusMessage = connection.getResponseMessage();
-            response.protocol = urlString.toLowerCase().startsWith("https") ? "HTTPS" : "HTTP";
+            response.statusCode = result.statusCode;
+            response.statusMessage = HttpTransport.reasonPhrase(result.statusCode);
+            response.protocol = (urlString.toLowerCase().startsWith("https") ? "HTTPS" : "HTTP")
+                + " (" + result.protocol() + ")";
+            response.cacheStatus = result.cacheStatus;
+            response.cacheStats = HttpTransport.shared().cacheStats();
+            response.contentEncoding = result.header("Content-Encoding");
+            response.compression = result.compressionSummary();
             
             // Get headers
-            response.headers = connection.getHeaderFields();
+            response.headers = result.headers;
             
             // Store cookies if enabled
             if (useCookiesCheckBox.isSelected()) {
@@ -574,62 +585,50 @@ public class WebClient {
             }
             
             // Get content length
-            response.contentLength = connection.getContentLength();
+            response.contentLength = parseContentLength(result.header("Content-Length"));
             
             // Get content type
-            response.contentType = connection.getContentType();
+            response.contentType = result.contentType();
             
-            // Read response body (for all methods except HEAD)
-            if (!"HEAD".equals(method)) {
-                InputStream inputStream;
-                if (response.statusCode >= 200 && response.statusCode < 400) {
-                    inputStream = connection.getInputStream();
-                } else {
-                    inputStream = connection.getErrorStream();
-                }
+            // Read response body (for all methods except HEAD); transport đã giải nén
+            response.bodyLength = result.bodyLength;
+            if (result.bodyFile != null) {
+                response.bodyFile = result.bodyFile;
+                response.charset = BodyReader.charset(response.contentType, result.bodyFile);
+            } else if (!"HEAD".equals(method)) {
+                response.rawBody = result.body;
+                response.charset = BodyReader.charset(response.contentType, result.body);
+                response.body = result.text();
                 
-                if (inputStream != null) {
-                    // Check if response is compressed
-                    String encoding = connection.getContentEncoding();
-                    if ("gzip".equalsIgnoreCase(encoding)) {
-                        inputStream = new java.util.zip.GZIPInputStream(inputStream);
-                    }
-                    
-                    response.body = readInputStream(inputStream);
-                    
-                    // Analyze HTML content
-                    if (response.body != null && 
-                        (response.contentType != null && 
-                         (response.contentType.contains("html") || response.contentType.contains("xml")))) {
-                        response.htmlStats = analyzeHtml(response.body);
-                    }
+                // Analyze HTML content
+                if (response.body != null && 
+                    (response.contentType != null && 
+                     (response.contentType.contains("html") || response.contentType.contains("xml")))) {
+                    response.htmlStats = analyzeHtml(response.body);
                 }
             }
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.error = "Request cancelled";
+            response.exception = e;
         } catch (Exception e) {
             response.error = e.getMessage();
             response.exception = e;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
         
         return response;
     }
     
-    private String readInputStream(InputStream inputStream) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
+    private static int parseContentLength(String value) {
+        try {
+            return value == null ? -1 : (int) Math.min(Long.parseLong(value.trim()), Integer.MAX_VALUE);
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        return content.toString();
     }
     
-    private void parseAndSetCustomHeaders(HttpURLConnection connection) {
+    private void parseAndSetCustomHeaders(HttpTransport.Request request) {
         String headersText = customHeadersArea.getText();
         if (headersText == null || headersText.trim().isEmpty()) {
             return;
@@ -648,7 +647,7 @@ public class WebClient {
                 String key = line.substring(0, colonIndex).trim();
                 String value = line.substring(colonIndex + 1).trim();
                 if (!key.isEmpty() && !value.isEmpty()) {
-                    connection.setRequestProperty(key, value);
+                    request.setHeader(key, value);
                 }
             }
         }
@@ -681,6 +680,9 @@ public class WebClient {
     }
     
     private void displayResponse(HttpResponse response) {
+        if (lastResponse != response) {
+            discardBody(lastResponse);
+        }
         // Save response for later use (save/copy functions)
         lastResponse = response;
         
@@ -699,11 +701,23 @@ public class WebClient {
             info.append("⏱️  Response Time: ").append(response.responseTime).append(" ms\n");
         }
         
+        if (response.cacheStatus != null) {
+            info.append("💾 Cache: ").append(response.cacheStatus).append(" (").append(response.cacheStats).append(")\n");
+        }
+        
+        if (response.contentEncoding != null) {
+            info.append("🗜️ Content-Encoding: ").append(response.contentEncoding);
+            if (response.compression != null) {
+                info.append(" (").append(response.compression).append(")");
+            }
+            info.append("\n");
+        }
+        
         info.append("📏 Content-Length: ");
         if (response.contentLength >= 0) {
             info.append(formatBytes(response.contentLength));
-        } else if (response.body != null) {
-            info.append(formatBytes(response.body.length())).append(" (actual)");
+        } else if (response.body != null || response.bodyFile != null) {
+            info.append(formatBytes(response.bodyLength)).append(" (actual)");
         } else {
             info.append("Không xác định");
         }
@@ -749,9 +763,31 @@ public class WebClient {
             }
         }
         
+        if (response.bodyFile != null) {
+            info.append("───────────────────────────────────────────────────────\n");
+            info.append("📄 NỘI DUNG PHẢN HỒI\n");
+            info.append("───────────────────────────────────────────────────────\n\n");
+            info.append("📦 Body lớn (").append(formatBytes(response.bodyLength))
+                .append(") được lưu tạm tại:\n   ").append(response.bodyFile).append("\n");
+            info.append("💡 Xem ở tab 📜 Body (").append(response.charset.name()).append(")\n");
+        }
+        
         responseArea.setText(info.toString());
         responseArea.setCaretPosition(0);
         
+        try {
+            if (response.bodyFile != null) {
+                bodyViewer.open(response.bodyFile, response.charset);
+            } else if (response.rawBody != null) {
+                bodyViewer.open(response.rawBody, response.charset);
+            } else {
+                bodyViewer.clear();
+            }
+        } catch (IOException e) {
+            bodyViewer.clear();
+            statusLabel.setText("❌ Không mở được body: " + e.getMessage());
+        }
+        
         // Display headers
         displayHeaders(response);
         
@@ -775,6 +811,14 @@ public class WebClient {
         }
     }
     
+    /** Xóa file tạm của response cũ (sau khi viewer đã bỏ vùng map của nó). */
+    private void discardBody(HttpResponse response) {
+        if (response != null && response.bodyFile != null) {
+            bodyViewer.clear();
+            BodyReader.deleteQuietly(response.bodyFile);
+        }
+    }
+    
     private String prettyPrintJson(String json) {
         // Simple JSON pretty print
         StringBuilder pretty = new StringBuilder();
@@ -882,27 +926,6 @@ public class WebClient {
         return sw.toString();
     }
     
-    private void trustAllCertificates() {
-        try {
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() { return null; }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                }
-            };
-            
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-            
-            HostnameVerifier allHostsValid = (hostname, session) -> true;
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-    
     // Cookie management methods
     private String getCookiesForUrl(String urlString) {
         try {
@@ -955,12 +978,20 @@ public class WebClient {
         String protocol;
         Map<String, java.util.List<String>> headers;
         String body;
+        byte[] rawBody;
+        java.nio.file.Path bodyFile;
+        long bodyLength;
+        java.nio.charset.Charset charset;
         int contentLength;
         String contentType;
         HtmlStats htmlStats;
         String error;
         Exception exception;
         long responseTime;
+        HttpCache.Status cacheStatus;
+        String cacheStats;
+        String contentEncoding;
+        String compression;
     }
     
     static class HtmlStats {
@@ -4,52 +4,603 @@ import com.sun.net.httpserver.*;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Web Server - Simple HTTP Server để test
  */
 public class WebServer {
+    /**
+     * Mô hình thực thi cho các handler.
+     * <ul>
+     *   <li>INLINE - chạy trực tiếp trên dispatcher thread của HttpServer (hành vi cũ)</li>
+     *   <li>VIRTUAL_THREADS - mỗi request chạy trên một virtual thread riêng.
+     *       Lưu ý: trên JDK 21 stream của HttpServer đọc body trong khối synchronized,
+     *       nên upload chậm vẫn giữ (pin) carrier thread trong lúc chờ.</li>
+     *   <li>BOUNDED_POOL - pool platform thread cố định với hàng đợi giới hạn</li>
+     * </ul>
+     */
+    public enum ExecutionMode {
+        INLINE,
+        VIRTUAL_THREADS,
+        BOUNDED_POOL
+    }
+    
+    /**
+     * Engine HTTP bên dưới; cả hai dùng cùng handler và filter.
+     * <ul>
+     *   <li>JDK - com.sun.net.httpserver có sẵn của JDK</li>
+     *   <li>NIO - {@link NioHttpServer}: mỗi connection một virtual thread, direct buffer dùng
+     *       lại từ pool, hỗ trợ keep-alive và pipelining. Với INLINE và VIRTUAL_THREADS handler
+     *       chạy ngay trên virtual thread của connection; BOUNDED_POOL vẫn dùng pool.</li>
+     * </ul>
+     */
+    public enum Engine {
+        JDK,
+        NIO
+    }
+    
+    static {
+        // HttpServer ghi header và body thành hai lần write; khi bật Nagle, body phải chờ
+        // delayed ACK (~40ms) của client. Tắt Nagle trừ khi người dùng đã tự cấu hình.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
     private HttpServer server;
+    private HttpsServer httpsServer;
     private int port;
     private boolean running = false;
+    private final ExecutionMode executionMode;
+    private final Engine engine;
+    private final int poolSize;
+    private ExecutorService executor;
+    private ExecutorService httpsExecutor;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final UserStore users = new UserStore();
+    private Path dataDirectory;
+    private volatile UserLog userLog;
+    private final CompressionFilter compressionFilter = new CompressionFilter();
+    private boolean compressionEnabled = true;
+    private Path staticRoot = Paths.get("www");
+    private long maxEchoBytes = 64L * 1024 * 1024;
+    private Path accessLogPath = Paths.get("server.log");
+    private int httpsPort = -1;
+    private Path keystorePath = Paths.get("server.p12");
+    private char[] keystorePassword = "changeit".toCharArray();
+    private int tlsSessionCacheSize = 10_000;
+    private int tlsSessionTimeoutSeconds = 3600;
+    private final TlsSupport.HandshakeStats handshakes = new TlsSupport.HandshakeStats();
+    private volatile AccessLog accessLog;
+    private int backlog = 256;
+    private int maxInFlight = 256;
+    private int maxQueued = 1024;
+    private long queueTimeoutMillis = 1000;
+    private volatile AdmissionFilter admissionFilter;
+    private volatile DrainFilter drainFilter;
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+    private final LongAdder drainedTotal = new LongAdder();
+    private final LongAdder abortedTotal = new LongAdder();
+    private final AtomicReference<Runnable> firstRequestListener = new AtomicReference<>();
+    
+    /**
+     * Kết quả của một lần {@link #stop(Duration)}: số request đã chạy xong trong lúc drain
+     * và số request bị cắt ngang khi hết hạn chờ. Với lần dừng ngay ({@link #isGraceful()}
+     * = false), {@code aborted} chỉ gồm request đã vào handler, không gồm request đang nằm
+     * trên connection bị đóng mà server chưa kịp đọc.
+     */
+    public static final class ShutdownReport {
+        private final long drained;
+        private final long aborted;
+        private final long millis;
+        private final boolean graceful;
+        
+        ShutdownReport(long drained, long aborted, long millis, boolean graceful) {
+            this.drained = drained;
+            this.aborted = aborted;
+            this.millis = millis;
+            this.graceful = graceful;
+        }
+        
+        public long getDrained() {
+            return drained;
+        }
+        
+        public long getAborted() {
+            return aborted;
+        }
+        
+        public long getMillis() {
+            return millis;
+        }
+        
+        /** false nếu server đã dừng ngay (timeout 0, hoặc engine JDK không drain được). */
+        public boolean isGraceful() {
+            return graceful;
+        }
+        
+        @Override
+        public String toString() {
+            return "drained " + drained + ", aborted " + aborted + " in " + millis + " ms"
+                + (graceful ? "" : ", hard stop");
+        }
+    }
     
     public WebServer(int port) {
+        this(port, ExecutionMode.INLINE);
+    }
+    
+    public WebServer(int port, ExecutionMode executionMode) {
+        this(port, executionMode, Runtime.getRuntime().availableProcessors() * 2);
+    }
+    
+    /**
+     * @param port          port lắng nghe (0 = port ngẫu nhiên)
+     * @param executionMode cách chạy handler
+     * @param poolSize      số thread cho BOUNDED_POOL (bỏ qua với các mode khác)
+     */
+    public WebServer(int port, ExecutionMode executionMode, int poolSize) {
+        this(port, executionMode, poolSize, Engine.JDK);
+    }
+    
+    public WebServer(int port, ExecutionMode executionMode, Engine engine) {
+        this(port, executionMode, Runtime.getRuntime().availableProcessors() * 2, engine);
+    }
+    
+    /**
+     * @param port          port lắng nghe (0 = port ngẫu nhiên)
+     * @param executionMode cách chạy handler
+     * @param poolSize      số thread cho BOUNDED_POOL (bỏ qua với các mode khác)
+     * @param engine        engine HTTP bên dưới
+     */
+    public WebServer(int port, ExecutionMode executionMode, int poolSize, Engine engine) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be >= 1: " + poolSize);
+        }
         this.port = port;
+        this.executionMode = Objects.requireNonNull(executionMode, "executionMode");
+        this.engine = Objects.requireNonNull(engine, "engine");
+        this.poolSize = poolSize;
+        seedDemoUsers();
+        metrics.register("httpserver_users", "Users in the in-memory /api/users store.",
+            "gauge", users::size);
+        metrics.register("httpserver_user_log_records_total", "Records appended to the user write-ahead log.",
+            "counter", () -> userLog != null ? userLog.records() : 0);
+        metrics.register("httpserver_user_log_commits_total", "Group commits (fsync) of the user write-ahead log.",
+            "counter", () -> userLog != null ? userLog.commits() : 0);
+        metrics.register("httpserver_user_log_snapshots_total", "User snapshots written.",
+            "counter", () -> userLog != null ? userLog.snapshots() : 0);
+        metrics.register("httpserver_access_log_written_total", "Access log records written to disk.",
+            "counter", () -> accessLog != null ? accessLog.written() : 0);
+        metrics.register("httpserver_access_log_dropped_total", "Access log records dropped because the buffer was full.",
+            "counter", () -> accessLog != null ? accessLog.dropped() : 0);
+        metrics.register("httpserver_tls_handshakes_full_total", "TLS handshakes that negotiated a new session.",
+            "counter", handshakes.full::sum);
+        metrics.register("httpserver_tls_handshakes_resumed_total", "TLS handshakes that resumed a cached session or ticket.",
+            "counter", handshakes.resumed::sum);
+        metrics.register("httpserver_tls_handshakes_failed_total", "TLS handshakes that failed.",
+            "counter", handshakes.failed::sum);
+        metrics.register("httpserver_in_flight", "Requests currently inside a handler.",
+            "gauge", () -> drainFilter != null ? drainFilter.inFlight() : 0);
+        metrics.register("httpserver_shutdown_drained_total", "Requests that completed while the server was draining.",
+            "counter", drainedTotal::sum);
+        metrics.register("httpserver_shutdown_aborted_total", "Requests cut off because the drain deadline passed.",
+            "counter", abortedTotal::sum);
+        metrics.register("httpserver_admission_in_flight", "Requests holding an admission permit.",
+            "gauge", () -> admissionFilter != null ? admissionFilter.inFlight() : 0);
+        metrics.register("httpserver_admission_queued", "Requests waiting for an admission permit.",
+            "gauge", () -> admissionFilter != null ? admissionFilter.queued() : 0);
+        metrics.register("httpserver_admission_admitted_total", "Requests admitted.",
+            "counter", () -> admissionFilter != null ? admissionFilter.admitted() : 0);
+        metrics.register("httpserver_admission_delayed_total", "Requests admitted after waiting in the queue.",
+            "counter", () -> admissionFilter != null ? admissionFilter.delayed() : 0);
+        metrics.register("httpserver_admission_shed_queue_full_total", "Requests rejected with 503 because the queue was full.",
+            "counter", () -> admissionFilter != null ? admissionFilter.shedQueueFull() : 0);
+        metrics.register("httpserver_admission_shed_timeout_total", "Requests rejected with 503 after the queue deadline.",
+            "counter", () -> admissionFilter != null ? admissionFilter.shedTimeout() : 0);
     }
     
     public void start() throws IOException {
-        server = HttpServer.create(new InetSocketAddress(port), 0);
+        if (dataDirectory != null && userLog == null) {
+            userLog = UserLog.open(dataDirectory, users);
+            System.out.println("💾 /api/users: " + users.size() + " user, phát lại " + userLog.recoveredRecords()
+                + " record trong " + userLog.recoveryMillis() + " ms (" + dataDirectory + ")");
+        }
+        InetSocketAddress address = new InetSocketAddress(port);
+        server = engine == Engine.NIO ? NioHttpServer.open(address, backlog) : HttpServer.create(address, backlog);
+        httpsServer = null;
+        if (httpsPort >= 0) {
+            try {
+                httpsServer = createHttpsServer();
+            } catch (IOException e) {
+                System.err.println("⚠️ Không bật được HTTPS, chỉ chạy HTTP: " + e.getMessage());
+            }
+        }
+        drainFilter = new DrainFilter();
+        admissionFilter = maxInFlight > 0 ? new AdmissionFilter(maxInFlight, maxQueued, queueTimeoutMillis) : null;
+        if (accessLogPath != null) {
+            accessLog = new AccessLog(accessLogPath);
+            metrics.setAccessLog(accessLog);
+        }
         
         // Register endpoints
-        server.createContext("/", new HomeHandler());
-        server.createContext("/test", new TestHandler());
-        server.createContext("/info", new InfoHandler());
-        server.createContext("/echo", new EchoHandler());
-        server.createContext("/status", new StatusHandler());
-        server.createContext("/api/users", new ApiUsersHandler());
+        createContext("/", new HomeHandler());
+        createContext("/test", new TestHandler());
+        createContext("/info", new InfoHandler());
+        createContext("/echo", new EchoHandler(maxEchoBytes));
+        createContext("/status", new StatusHandler());
+        createContext("/api/users", new UsersHandler(users, "/api/users"));
+        createContext("/static", new StaticFileHandler(staticRoot, "/static"));
+        createContext("/bench", new BenchHandler("/bench"));
+        // /metrics không qua admission để vẫn scrape được khi server quá tải
+        createContext("/metrics", metrics.new MetricsHandler(), false);
         
-        server.setExecutor(null); // Creates a default executor
+        executor = createExecutor(engine);
+        server.setExecutor(executor); // null = dispatcher thread (JDK) / thread của connection (NIO)
         server.start();
+        if (httpsServer != null) {
+            httpsExecutor = engine == Engine.JDK ? executor : createExecutor(Engine.JDK);
+            httpsServer.setExecutor(httpsExecutor);
+            httpsServer.start();
+        }
         running = true;
         
-        System.out.println("🖧 Web Server started on port " + port);
+        System.out.println("🖧 Web Server started on port " + getPort() + " (" + engine + ", " + executionMode + ")");
+        if (httpsServer != null) {
+            System.out.println("🔒 HTTPS listener on port " + getHttpsPort());
+        }
     }
     
+    /**
+     * Dừng server, chờ request đang xử lý tối đa {@link #setShutdownTimeout thời gian drain}.
+     */
     public void stop() {
-        if (server != null) {
-            server.stop(0);
-            running = false;
-            System.out.println("🛑 Web Server stopped");
+        stop(shutdownTimeout);
+    }
+    
+    /**
+     * Dừng êm: đóng socket lắng nghe ngay (không nhận connection mới), để các request đang
+     * xử lý chạy xong tới hạn {@code timeout} trong khi response của chúng đóng connection
+     * keep-alive, rồi đóng mọi connection còn lại, ghi nốt access log và user log.
+     * {@code Duration.ZERO} là dừng ngay như trước (request đang chạy bị cắt).
+     *
+     * Chỉ engine {@link Engine#NIO} drain được: listener đóng ngay còn connection đang mở vẫn
+     * được phục vụ. HttpServer của JDK không đóng riêng listener được, và stop(n) của nó đóng
+     * cả connection đã accept mà chưa đọc (đo bằng benchmark restart: lỗi nhiều hơn dừng ngay),
+     * nên engine JDK và listener HTTPS luôn dừng ngay như trước; report khi đó có
+     * {@link ShutdownReport#isGraceful()} = false.
+     *
+     * @return số request đã drain / bị hủy, hoặc null nếu server chưa chạy
+     */
+    public ShutdownReport stop(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must be >= 0: " + timeout);
+        }
+        if (server == null) {
+            return null;
+        }
+        long started = System.nanoTime();
+        long deadline = started + timeout.toNanos();
+        DrainFilter drain = drainFilter;
+        drain.startDraining();
+        
+        boolean graceful = !timeout.isZero() && server instanceof NioHttpServer;
+        if (!graceful) {
+            deadline = started; // dừng ngay: không chờ executor
+        }
+        
+        // NioHttpServer.stop(n) đóng listener rồi chờ request đang xử lý (kể cả request mới nhận
+        // được một phần) tối đa n giây; HttpServer của JDK (cả HTTPS) luôn stop(0)
+        for (HttpServer target : httpsServer != null ? List.of(server, httpsServer) : List.of(server)) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            target.stop(graceful && target instanceof NioHttpServer
+                ? (int) Math.min(Integer.MAX_VALUE, (TimeUnit.NANOSECONDS.toMillis(remaining) + 999) / 1000) : 0);
+        }
+        httpsServer = null;
+        running = false;
+        
+        // Handler có thể còn chạy vài bước sau khi response đã gửi xong (filter, access log):
+        // chờ executor tới hạn, phần còn lại (kể cả task chưa kịp chạy) tính là bị hủy
+        long aborted = 0;
+        if (httpsExecutor != null && httpsExecutor != executor) {
+            aborted += shutdownExecutor(httpsExecutor, deadline);
+        }
+        httpsExecutor = null;
+        if (executor != null) {
+            aborted += shutdownExecutor(executor, deadline);
+            executor = null;
+        }
+        aborted += drain.inFlight() + drain.aborted();
+        long drained = drain.drained();
+        drainedTotal.add(drained);
+        abortedTotal.add(aborted);
+        
+        metrics.setAccessLog(null);
+        if (accessLog != null) {
+            accessLog.close(); // ghi nốt các record còn trong buffer
+        }
+        if (userLog != null) {
+            users.attachLog(null);
+            try {
+                userLog.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ Không đóng được user log: " + e.getMessage());
+            }
+            userLog = null;
         }
+        ShutdownReport report = new ShutdownReport(drained, aborted,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), graceful);
+        System.out.println("🛑 Web Server stopped (" + report + ")");
+        return report;
+    }
+    
+    /** @return số task bị bỏ dở hoặc chưa kịp chạy khi hết hạn */
+    private static int shutdownExecutor(ExecutorService executor, long deadline) {
+        executor.shutdown();
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return executor.shutdownNow().size();
     }
     
     public boolean isRunning() {
         return running;
     }
     
+    /**
+     * Port thực tế đang lắng nghe (hữu ích khi khởi tạo với port 0).
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+    
+    /**
+     * Port HTTPS thực tế, hoặc -1 nếu HTTPS không chạy.
+     */
+    public int getHttpsPort() {
+        return httpsServer != null ? httpsServer.getAddress().getPort() : -1;
+    }
+    
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    public Engine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Bật/tắt nén gzip/deflate cho mọi context (mặc định bật). Gọi trước {@link #start()}.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+    
+    /**
+     * Thư mục gốc cho context /static (mặc định ./www). Gọi trước {@link #start()}.
+     */
+    public void setStaticRoot(Path staticRoot) {
+        this.staticRoot = Objects.requireNonNull(staticRoot, "staticRoot");
+    }
+    
+    /**
+     * Kích thước body tối đa cho /echo (mặc định 64 MB). Gọi trước {@link #start()}.
+     */
+    public void setMaxEchoBytes(long maxEchoBytes) {
+        if (maxEchoBytes < 0) {
+            throw new IllegalArgumentException("maxEchoBytes must be >= 0: " + maxEchoBytes);
+        }
+        this.maxEchoBytes = maxEchoBytes;
+    }
+    
+    /**
+     * Giới hạn tải cho mọi context trừ /metrics (mặc định 256 đang xử lý, 1024 chờ tối đa 1 giây).
+     * Request vượt giới hạn nhận ngay 503 kèm Retry-After. Gọi trước {@link #start()}.
+     *
+     * @param maxInFlight        số request xử lý đồng thời tối đa (0 = tắt admission control)
+     * @param maxQueued          số request được chờ tối đa
+     * @param queueTimeoutMillis thời gian chờ tối đa trước khi bị từ chối
+     */
+    public void setAdmissionLimits(int maxInFlight, int maxQueued, long queueTimeoutMillis) {
+        if (maxInFlight < 0 || maxQueued < 0 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("admission limits must be >= 0");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+    
+    /**
+     * Backlog của socket lắng nghe (mặc định 256; 0 = mặc định của hệ thống). Gọi trước {@link #start()}.
+     */
+    public void setBacklog(int backlog) {
+        if (backlog < 0) {
+            throw new IllegalArgumentException("backlog must be >= 0: " + backlog);
+        }
+        this.backlog = backlog;
+    }
+    
+    /**
+     * Lưu dữ liệu /api/users vào write-ahead log trong thư mục này (mặc định null = chỉ trong
+     * bộ nhớ). Khi start, dữ liệu cũ được khôi phục thay cho user demo. Gọi trước {@link #start()}.
+     */
+    public void setDataDirectory(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+    
+    /**
+     * Bật listener HTTPS phục vụ cùng các context (mặc định tắt; 0 = port ngẫu nhiên, -1 = tắt).
+     * HTTPS luôn dùng HttpsServer của JDK, kể cả khi engine HTTP là NIO. Gọi trước {@link #start()}.
+     */
+    public void setHttpsPort(int httpsPort) {
+        this.httpsPort = httpsPort;
+    }
+    
+    /**
+     * Keystore PKCS12 cho HTTPS (mặc định ./server.p12, mật khẩu "changeit"); nếu file chưa có
+     * sẽ được sinh tự ký cho localhost. Gọi trước {@link #start()}.
+     */
+    public void setKeystore(Path keystorePath, char[] password) {
+        this.keystorePath = Objects.requireNonNull(keystorePath, "keystorePath");
+        this.keystorePassword = password.clone();
+    }
+    
+    /**
+     * Cấu hình TLS session cache phía server để client kết nối lại được resume thay vì full
+     * handshake (mặc định 10000 session, 1 giờ). Gọi trước {@link #start()}.
+     */
+    public void setTlsSessionCache(int cacheSize, int timeoutSeconds) {
+        if (cacheSize < 0 || timeoutSeconds < 0) {
+            throw new IllegalArgumentException("TLS session cache settings must be >= 0");
+        }
+        this.tlsSessionCacheSize = cacheSize;
+        this.tlsSessionTimeoutSeconds = timeoutSeconds;
+    }
+    
+    /**
+     * Thời gian tối đa {@link #stop()} chờ request đang xử lý chạy xong (mặc định 10 giây;
+     * {@code Duration.ZERO} = dừng ngay). Chỉ có tác dụng với engine {@link Engine#NIO}.
+     */
+    public void setShutdownTimeout(Duration shutdownTimeout) {
+        if (shutdownTimeout.isNegative()) {
+            throw new IllegalArgumentException("shutdownTimeout must be >= 0: " + shutdownTimeout);
+        }
+        this.shutdownTimeout = shutdownTimeout;
+    }
+    
+    /**
+     * Gọi một lần khi request đầu tiên tới handler (để đo time-to-first-request lúc khởi động).
+     * Gọi trước {@link #start()}.
+     */
+    public void setFirstRequestListener(Runnable listener) {
+        firstRequestListener.set(listener);
+    }
+    
+    /**
+     * File access log (mặc định ./server.log, xoay vòng khi đầy); null để tắt. Gọi trước {@link #start()}.
+     */
+    public void setAccessLogPath(Path accessLogPath) {
+        this.accessLogPath = accessLogPath;
+    }
+    
+    /**
+     * Thêm {@code count} user sinh tự động vào /api/users (ví dụ vài triệu user để load-test).
+     */
+    public void seedUsers(int count) throws IOException {
+        users.seed(count);
+    }
+    
+    UserStore users() {
+        return users;
+    }
+    
+    private void seedDemoUsers() {
+        try {
+            users.create("Nguyen Van A", "nguyenvana@example.com");
+            users.create("Tran Thi B", "tranthib@example.com");
+            users.create("Le Van C", "levanc@example.com");
+        } catch (UserStore.DuplicateEmailException | IOException e) {
+            throw new IllegalStateException(e); // chưa có log lúc khởi tạo: không xảy ra
+        }
+    }
+    
+    /**
+     * Số liệu theo context (request, status, byte vào/ra, latency) ở định dạng Prometheus,
+     * giống nội dung của endpoint /metrics.
+     */
+    public String renderMetrics() {
+        return metrics.render();
+    }
+    
+    TlsSupport.HandshakeStats tlsHandshakes() {
+        return handshakes;
+    }
+    
+    private void createContext(String path, HttpHandler handler) {
+        createContext(path, handler, true);
+    }
+    
+    private void createContext(String path, HttpHandler handler, boolean admission) {
+        registerContext(server, path, handler, admission);
+        if (httpsServer != null) {
+            registerContext(httpsServer, path, handler, admission);
+        }
+    }
+    
+    private void registerContext(HttpServer target, String path, HttpHandler handler, boolean admission) {
+        HttpContext context = target.createContext(path, handler);
+        // Thứ tự: drain (mọi request, kể cả /metrics) -> đo lường (tính cả 503 và byte sau nén)
+        // -> admission -> nén
+        context.getFilters().add(drainFilter);
+        if (firstRequestListener.get() != null) {
+            context.getFilters().add(Filter.beforeHandler("First request", exchange -> {
+                Runnable listener = firstRequestListener.get() != null ? firstRequestListener.getAndSet(null) : null;
+                if (listener != null) {
+                    listener.run();
+                }
+            }));
+        }
+        context.getFilters().add(metrics.filter(path));
+        if (admission && admissionFilter != null) {
+            context.getFilters().add(admissionFilter);
+        }
+        if (compressionEnabled) {
+            context.getFilters().add(compressionFilter);
+        }
+    }
+    
+    /** HttpsServer dùng keystore (tự sinh nếu chưa có) và session cache đã cấu hình. */
+    private HttpsServer createHttpsServer() throws IOException {
+        try {
+            TlsSupport.ensureKeystore(keystorePath, keystorePassword);
+            javax.net.ssl.SSLContext sslContext = TlsSupport.serverContext(keystorePath, keystorePassword,
+                tlsSessionCacheSize, tlsSessionTimeoutSeconds, handshakes);
+            HttpsServer https = HttpsServer.create(new InetSocketAddress(httpsPort), backlog);
+            https.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            return https;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot configure HTTPS: " + e.getMessage(), e);
+        }
+    }
+    
+    private ExecutorService createExecutor(Engine engine) {
+        if (engine == Engine.NIO && executionMode != ExecutionMode.BOUNDED_POOL) {
+            return null; // connection đã chạy trên virtual thread riêng
+        }
+        switch (executionMode) {
+            case VIRTUAL_THREADS:
+                return Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("http-vt-", 0).factory());
+            case BOUNDED_POOL:
+                AtomicInteger threadCount = new AtomicInteger();
+                ThreadFactory factory = r -> {
+                    Thread t = new Thread(r, "http-pool-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                };
+                // Hàng đợi giới hạn; khi đầy thì dispatcher tự chạy request (backpressure)
+                return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(poolSize * 16), factory,
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            case INLINE:
+            default:
+                return null;
+        }
+    }
+    
     // Home Handler
     static class HomeHandler implements HttpHandler {
         @Override
@@ -66,25 +617,17 @@ public class WebServer {
         }
         
         private void handleGet(HttpExchange exchange) throws IOException {
-            String html = generateHomePage();
-            byte[] response = html.getBytes(StandardCharsets.UTF_8);
-            
-            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
-            exchange.sendResponseHeaders(200, response.length);
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(response);
-            }
+            sendSnapshot(exchange, TEMPLATE.snapshot(), "text/html; charset=UTF-8");
         }
         
+        // HEAD trả lời từ metadata của snapshot, không render/ghi body
         private void handleHead(HttpExchange exchange) throws IOException {
-            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
-            exchange.getResponseHeaders().add("Content-Length", String.valueOf(generateHomePage().length()));
-            exchange.sendResponseHeaders(200, -1);
+            sendSnapshot(exchange, TEMPLATE.snapshot(), "text/html; charset=UTF-8");
         }
         
-        private String generateHomePage() {
-            return "<!DOCTYPE html>\n" +
+        // Trang chủ chỉ thay đổi ở đồng hồ, phần còn lại được encode sẵn một lần
+        static final ResponseTemplate TEMPLATE = ResponseTemplate.builder()
+            .text("<!DOCTYPE html>\n" +
                 "<html lang='vi'>\n" +
                 "<head>\n" +
                 "    <meta charset='UTF-8'>\n" +
@@ -114,7 +657,9 @@ public class WebServer {
                 "        <p class='subtitle'>Web Server cho testing HTTP/HTTPS requests</p>\n" +
                 "        \n" +
                 "        <div class='info'>\n" +
-                "            <p><strong>⏰ Server Time:</strong> " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "</p>\n" +
+                "            <p><strong>⏰ Server Time:</strong> ")
+            .fragment(ResponseTemplate.clock("yyyy-MM-dd HH:mm:ss"))
+            .text("</p>\n" +
                 "            <p><strong>🖧 Status:</strong> <span style='color: green;'>🟢 Running</span></p>\n" +
                 "            <p><strong>📍 Port:</strong> 8080</p>\n" +
                 "        </div>\n" +
@@ -149,7 +694,19 @@ public class WebServer {
                 "            </div>\n" +
                 "            <div class='endpoint'>\n" +
                 "                <span class='method get'>GET</span>\n" +
-                "                <a href='/api/users'>/api/users</a> - Demo API JSON\n" +
+                "                <a href='/api/users'>/api/users</a> - User API (phân trang, GET/POST/PUT/DELETE)\n" +
+                "            </div>\n" +
+                "            <div class='endpoint'>\n" +
+                "                <span class='method get'>GET</span>\n" +
+                "                /static/* - File tĩnh (hỗ trợ Range)\n" +
+                "            </div>\n" +
+                "            <div class='endpoint'>\n" +
+                "                <span class='method get'>GET</span>\n" +
+                "                <a href='/bench'>/bench/*</a> - Tải tổng hợp: html, json, bytes, delay, drip\n" +
+                "            </div>\n" +
+                "            <div class='endpoint'>\n" +
+                "                <span class='method get'>GET</span>\n" +
+                "                <a href='/metrics'>/metrics</a> - Số liệu kiểu Prometheus\n" +
                 "            </div>\n" +
                 "        </div>\n" +
                 "        \n" +
@@ -163,31 +720,29 @@ public class WebServer {
                 "        </div>\n" +
                 "    </div>\n" +
                 "</body>\n" +
-                "</html>";
-        }
+                "</html>")
+            .build();
     }
     
     // Test Handler with many HTML tags
     static class TestHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
                 sendResponse(exchange, 405, "Method Not Allowed");
                 return;
             }
             
-            String html = generateTestPage();
-            byte[] response = html.getBytes(StandardCharsets.UTF_8);
-            
-            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
-            exchange.sendResponseHeaders(200, response.length);
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(response);
-            }
+            sendSnapshot(exchange, TEMPLATE.snapshot(), "text/html; charset=UTF-8");
         }
         
-        private String generateTestPage() {
+        // Trang test hoàn toàn tĩnh: build và encode một lần duy nhất
+        static final ResponseTemplate TEMPLATE = ResponseTemplate.builder()
+            .text(generateTestPage())
+            .build();
+        
+        private static String generateTestPage() {
             StringBuilder html = new StringBuilder();
             html.append("<!DOCTYPE html><html><head><meta charset='UTF-8'><title>Test Page</title></head><body>");
             html.append("<h1>Test Page - HTML Tags Demo</h1>");
@@ -209,7 +764,7 @@ public class WebServer {
             
             // Add multiple images
             for (int i = 1; i <= 5; i++) {
-                html.append("<img src='image").append(i).append(".jpg' alt='Image ").append(i).append("'>");
+                html.append("<img src='/static/image").append(i).append(".jpg' alt='Image ").append(i).append("'>");
             }
             
             html.append("</body></html>");
@@ -261,8 +816,16 @@ public class WebServer {
         }
     }
     
-    // Echo Handler for POST
+    // Echo Handler for POST - stream body từ request sang response với buffer cố định
     static class EchoHandler implements HttpHandler {
+        private static final int BUFFER_SIZE = 16 * 1024;
+        
+        private final long maxBodyBytes;
+        
+        EchoHandler(long maxBodyBytes) {
+            this.maxBodyBytes = maxBodyBytes;
+        }
+        
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!"POST".equals(exchange.getRequestMethod())) {
@@ -270,22 +833,102 @@ public class WebServer {
                 return;
             }
             
-            // Read POST body
-            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            long declaredLength = parseContentLength(exchange.getRequestHeaders().getFirst("Content-Length"));
+            if (declaredLength > maxBodyBytes) {
+                sendResponse(exchange, 413, "Payload Too Large - max " + maxBodyBytes + " bytes");
+                return;
+            }
             
-            String response = "{\n" +
+            if ("summary".equals(queryParameters(exchange.getRequestURI()).get("mode"))) {
+                handleSummary(exchange);
+            } else {
+                handleEcho(exchange, declaredLength);
+            }
+        }
+        
+        /**
+         * Trả lại body trong field receivedData. Biết Content-Length thì response có độ dài cố định,
+         * nếu không thì gửi chunked; body không bao giờ được giữ toàn bộ trong bộ nhớ.
+         */
+        private void handleEcho(HttpExchange exchange, long declaredLength) throws IOException {
+            byte[] prefix = ("{\n" +
                 "  \"status\": \"success\",\n" +
                 "  \"message\": \"Echo successful\",\n" +
                 "  \"timestamp\": \"" + LocalDateTime.now() + "\",\n" +
-                "  \"receivedData\": " + body + "\n" +
-                "}";
+                "  \"receivedData\": ").getBytes(StandardCharsets.UTF_8);
+            byte[] empty = "null".getBytes(StandardCharsets.UTF_8);
+            byte[] suffix = "\n}".getBytes(StandardCharsets.UTF_8);
             
-            byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
             exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
-            exchange.sendResponseHeaders(200, responseBytes.length);
+            if (declaredLength >= 0) {
+                long bodyLength = declaredLength == 0 ? empty.length : declaredLength;
+                exchange.sendResponseHeaders(200, prefix.length + bodyLength + suffix.length);
+            } else {
+                exchange.sendResponseHeaders(200, 0); // chunked
+            }
             
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+            try (InputStream in = exchange.getRequestBody();
+                 OutputStream os = exchange.getResponseBody()) {
+                os.write(prefix);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long total = 0;
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    total += n;
+                    if (total > maxBodyBytes) {
+                        // Header đã gửi nên không thể trả 413: cắt kết nối
+                        throw new IOException("Echo body exceeds " + maxBodyBytes + " bytes");
+                    }
+                    os.write(buffer, 0, n);
+                }
+                if (total == 0) {
+                    os.write(empty);
+                }
+                os.write(suffix);
+            }
+        }
+        
+        /** Chế độ summary: chỉ trả về kích thước và SHA-256 của body. */
+        private void handleSummary(HttpExchange exchange) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("SHA-256 not available", e);
+            }
+            
+            long total = 0;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    total += n;
+                    if (total > maxBodyBytes) {
+                        sendResponse(exchange, 413, "Payload Too Large - max " + maxBodyBytes + " bytes");
+                        return;
+                    }
+                    digest.update(buffer, 0, n);
+                }
+            }
+            
+            try (JsonWriter json = JsonWriter.forResponse(exchange, 200)) {
+                json.beginObject()
+                    .field("status", "success")
+                    .field("mode", "summary")
+                    .field("bytes", total)
+                    .field("sha256", HexFormat.of().formatHex(digest.digest()))
+                    .endObject();
+            }
+        }
+        
+        private static long parseContentLength(String value) {
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
             }
         }
     }
@@ -314,33 +957,71 @@ public class WebServer {
         }
     }
     
-    // API Users Handler
-    static class ApiUsersHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
-                sendResponse(exchange, 405, "Method Not Allowed");
-                return;
+    /**
+     * Gửi snapshot đã cache cho GET/HEAD: luôn kèm ETag/Last-Modified, trả 304 khi client
+     * đã có bản hiện tại, và trả lời HEAD chỉ từ metadata.
+     */
+    private static void sendSnapshot(HttpExchange exchange, ResponseTemplate.Snapshot snapshot,
+                                     String contentType) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        headers.set("Cache-Control", "no-cache"); // luôn revalidate, 304 gần như miễn phí
+        headers.add("Vary", "Accept-Encoding");
+        
+        // Biến thể nén được cache cùng snapshot, không nén lại mỗi request
+        String encoding = CompressionFilter.negotiated(exchange);
+        byte[] variant = null;
+        if (encoding != null && snapshot.length >= CompressionFilter.DEFAULT_MIN_SIZE) {
+            variant = snapshot.variant(encoding);
+            headers.set("Content-Encoding", encoding);
+        } else {
+            encoding = null;
+        }
+        String etag = CompressionFilter.variantEtag(snapshot.etag, encoding);
+        ConditionalRequests.applyValidators(headers, etag, snapshot.lastModifiedHeader);
+        
+        if (ConditionalRequests.isNotModified(exchange, etag, snapshot.lastModified)) {
+            headers.remove("Content-Encoding");
+            ConditionalRequests.sendNotModified(exchange);
+            return;
+        }
+        
+        long length = variant != null ? variant.length : snapshot.length;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            headers.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        
+        exchange.sendResponseHeaders(200, length);
+        
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (variant != null) {
+                os.write(variant);
+            } else {
+                snapshot.writeTo(os);
             }
-            
-            String json = "{\n" +
-                "  \"users\": [\n" +
-                "    {\"id\": 1, \"name\": \"Nguyen Van A\", \"email\": \"nguyenvana@example.com\"},\n" +
-                "    {\"id\": 2, \"name\": \"Tran Thi B\", \"email\": \"tranthib@example.com\"},\n" +
-                "    {\"id\": 3, \"name\": \"Le Van C\", \"email\": \"levanc@example.com\"}\n" +
-                "  ],\n" +
-                "  \"total\": 3,\n" +
-                "  \"timestamp\": \"" + LocalDateTime.now() + "\"\n" +
-                "}";
-            
-            byte[] response = json.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
-            exchange.sendResponseHeaders(200, response.length);
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(response);
+        }
+    }
+    
+    /** Parse query string (đã decode) thành map; tham số lặp lại giữ giá trị đầu tiên. */
+    static Map<String, String> queryParameters(URI uri) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
             }
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            parameters.putIfAbsent(key, value);
         }
+        return parameters;
     }
     
     private static void sendResponse(HttpExchange exchange, int statusCode, String message) throws IOException {
@@ -9,6 +9,12 @@ module SimpleHttpBrowser {
     // Required for HTTP Server
     requires jdk.httpserver;
     
+    // Shared HTTP client (connection pool, HTTP/2) for the browser tabs
+    requires java.net.http;
+    
+    // Allocation/CPU counters used by Benchmarks
+    requires jdk.management;
+    
     // Export package for accessibility
     exports com.httpbrowser;
 }
\ No newline at end of file